@@ -0,0 +1,234 @@
+package terminal;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import terminal.EventListener.OverflowPolicy;
+
+/**
+ * La clase BoundedEventQueue es una cola de eventos de capacidad fija. Cuando
+ * la cola se encuentra llena se aplica la politica de desborde indicada, de
+ * modo que un consumidor lento no pueda acumular eventos sin limite.
+ */
+final class BoundedEventQueue<T extends Event> implements EventQueue<T> {
+
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+	private final ArrayDeque<Slot<T>> queue;
+	/**
+	 * Ultimo evento pendiente de cada tipo y nodo. Solo se utiliza con la politica
+	 * Coalesce.
+	 */
+	private final HashMap<CoalesceKey, Slot<T>> pending;
+
+	private int maxDepth;
+	private long droppedEvents;
+	private long coalescedEvents;
+	private long producerStalls;
+	private long producerStallNanos;
+	private volatile boolean fallenBehind;
+
+	public BoundedEventQueue(int capacity, OverflowPolicy overflowPolicy) {
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.notFull = lock.newCondition();
+		this.queue = new ArrayDeque<>(capacity);
+		this.pending = (overflowPolicy == OverflowPolicy.Coalesce) ? new HashMap<CoalesceKey, Slot<T>>() : null;
+
+		this.maxDepth = 0;
+		this.droppedEvents = 0;
+		this.coalescedEvents = 0;
+		this.producerStalls = 0;
+		this.producerStallNanos = 0;
+		this.fallenBehind = false;
+	}
+
+	@Override
+	public void add(T event) {
+		lock.lock();
+		try {
+			if (queue.size() == capacity && !overflow(event))
+				return;
+
+			Slot<T> slot = new Slot<>(event);
+			queue.add(slot);
+			if (pending != null && event.getSourceId() != Event.NO_SOURCE)
+				pending.put(new CoalesceKey(event), slot);
+			if (queue.size() > maxDepth)
+				maxDepth = queue.size();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Aplica la politica de desborde con la cola llena. Devuelve true si el evento
+	 * debe depositarse en la cola.
+	 */
+	private boolean overflow(T event) {
+		fallenBehind = true;
+		switch (overflowPolicy) {
+		case Block:
+			long start = System.nanoTime();
+			++producerStalls;
+			while (queue.size() == capacity)
+				notFull.awaitUninterruptibly();
+			producerStallNanos += System.nanoTime() - start;
+			return true;
+		case DropNewest:
+			++droppedEvents;
+			return false;
+		case Coalesce:
+			if (event.getSourceId() != Event.NO_SOURCE) {
+				Slot<T> slot = pending.get(new CoalesceKey(event));
+				if (slot != null) {
+					slot.event = event;
+					++coalescedEvents;
+					return false;
+				}
+			}
+			dropOldest();
+			return true;
+		case DropOldest:
+		default:
+			dropOldest();
+			return true;
+		}
+	}
+
+	private void dropOldest() {
+		Slot<T> slot = queue.poll();
+		forget(slot);
+		++droppedEvents;
+	}
+
+	private void forget(Slot<T> slot) {
+		if (pending != null && slot.event.getSourceId() != Event.NO_SOURCE) {
+			CoalesceKey key = new CoalesceKey(slot.event);
+			if (pending.get(key) == slot)
+				pending.remove(key);
+		}
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (queue.isEmpty())
+				notEmpty.await();
+			return remove();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (queue.isEmpty()) {
+				if (remaining <= 0)
+					return null;
+				remaining = notEmpty.awaitNanos(remaining);
+			}
+			return remove();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super T> events, int maxEvents) {
+		lock.lock();
+		try {
+			int drained = 0;
+			while (drained < maxEvents && !queue.isEmpty()) {
+				events.add(remove());
+				++drained;
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retira el proximo evento de la cola. Debe invocarse con el lock tomado y la
+	 * cola no vacia.
+	 */
+	private T remove() {
+		Slot<T> slot = queue.poll();
+		forget(slot);
+		notFull.signal();
+		return slot.event;
+	}
+
+	@Override
+	public EventQueueStatistics getStatistics() {
+		lock.lock();
+		try {
+			return new EventQueueStatistics(capacity, queue.size(), maxDepth, droppedEvents, coalescedEvents, producerStalls, producerStallNanos);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean hasFallenBehind() {
+		return fallenBehind;
+	}
+
+	@Override
+	public void clearFallenBehind() {
+		fallenBehind = false;
+	}
+
+	private static final class Slot<T> {
+
+		private T event;
+
+		public Slot(T event) {
+			this.event = event;
+		}
+
+	}
+
+	private static final class CoalesceKey {
+
+		private final Class<?> type;
+		private final int physicalId;
+
+		public CoalesceKey(Event event) {
+			this.type = event.getClass();
+			this.physicalId = event.getSourceId();
+		}
+
+		@Override
+		public int hashCode() {
+			return type.hashCode() * 31 + physicalId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CoalesceKey))
+				return false;
+			CoalesceKey key = (CoalesceKey) obj;
+			return type == key.type && physicalId == key.physicalId;
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+package terminal;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * La clase CallbackListener entrega los eventos a una funcion desde un
+ * Executor compartido, sin un thread dedicado por listener. Los eventos de
+ * cada listener se atienden de a uno y en el orden en que fueron recibidos:
+ * solo existe una tarea en el Executor por listener, la cual se programa al
+ * llegar un evento sin que haya otros pendientes. Luego de atender una
+ * cantidad maxima de eventos la tarea se vuelve a programar, para no acaparar
+ * los threads del Executor. Si el Executor rechaza la tarea, el listener se
+ * detiene y descarta los eventos pendientes y los que lleguen luego.
+ */
+public final class CallbackListener<T extends Event> implements EventSink<T> {
+
+	private static final int MAX_BATCH_SIZE = 64;
+
+	private final Consumer<? super T> callback;
+	private final Executor executor;
+	private final ConcurrentLinkedQueue<T> queue;
+	/**
+	 * Cantidad de eventos pendientes. La tarea se programa cuando pasa de 0 a 1.
+	 */
+	private final AtomicInteger pendingEvents;
+	private final Runnable dispatchTask;
+
+	private volatile int maxPendingEvents;
+	private volatile boolean stopped;
+
+	CallbackListener(Consumer<? super T> callback, Executor executor) {
+		this.callback = callback;
+		this.executor = executor;
+		this.queue = new ConcurrentLinkedQueue<>();
+		this.pendingEvents = new AtomicInteger(0);
+		this.dispatchTask = new DispatchTask();
+		this.maxPendingEvents = 0;
+		this.stopped = false;
+	}
+
+	@Override
+	public void receiveEvent(T event) {
+		if (stopped)
+			return;
+
+		queue.add(event);
+		int pending = pendingEvents.incrementAndGet();
+		if (pending > maxPendingEvents)
+			maxPendingEvents = pending;
+		if (pending == 1)
+			schedule();
+	}
+
+	/**
+	 * Devuelve la cantidad de eventos que aun no fueron entregados a la funcion.
+	 */
+	public int getPendingEvents() {
+		return Math.max(0, pendingEvents.get());
+	}
+
+	/**
+	 * Devuelve la mayor cantidad de eventos pendientes observada.
+	 */
+	public int getMaxPendingEvents() {
+		return maxPendingEvents;
+	}
+
+	/**
+	 * Devuelve true si el Executor rechazo la entrega de eventos, en cuyo caso el
+	 * listener ya no recibe eventos.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	private void schedule() {
+		try {
+			executor.execute(dispatchTask);
+		} catch (RejectedExecutionException e) {
+			e.printStackTrace();
+			stopped = true;
+			queue.clear();
+		}
+	}
+
+	private final class DispatchTask implements Runnable {
+
+		@Override
+		public void run() {
+			for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+				if (stopped)
+					return;
+
+				T event = queue.poll();
+				if (event != null) {
+					try {
+						callback.accept(event);
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+				if (pendingEvents.decrementAndGet() <= 0)
+					return;
+			}
+			schedule();
+		}
+
+	}
+
+}
@@ -53,6 +53,24 @@ public final class Color {
 		return blue;
 	}
 
+	/**
+	 * Devuelve la posicion del color dentro de los colores predefinidos.
+	 */
+	int getIndex() {
+		return indexOf(red, green, blue);
+	}
+
+	/**
+	 * Devuelve la posicion, dentro de los colores predefinidos, del color formado
+	 * por los valores rgb proporcionados.
+	 */
+	static int indexOf(byte red, byte green, byte blue) {
+		int redValue = (red == 0x0F) ? 1 : 0;
+		int greenValue = (green == 0x0F) ? 1 : 0;
+		int blueValue = (blue == 0x0F) ? 1 : 0;
+		return blueValue + greenValue * 2 + redValue * 4;
+	}
+
 	@Override
 	public String toString() {
 		return "RED = " + red + " || GREEN = " + green + " || BLUE = " + blue;
@@ -64,10 +82,15 @@ public final class Color {
 		 * Crea un color a partir de los valores rgb proporcionados.
 		 */
 		public static Color createColor(byte red, byte green, byte blue) {
-			int redValue = (red == 0x0F) ? 1 : 0;
-			int greenValue = (green == 0x0F) ? 1 : 0;
-			int blueValue = (blue == 0x0F) ? 1 : 0;
-			int index = blueValue + greenValue * 2 + redValue * 4;
+			return colors.get(indexOf(red, green, blue));
+		}
+
+		/**
+		 * Devuelve el color predefinido que se encuentra en la posicion indicada.
+		 */
+		public static Color createColor(int index) {
+			if (index < 0 || index >= colors.size())
+				throw new IllegalArgumentException("El indice de color debe estar entre 0 y " + (colors.size() - 1) + ".");
 			return colors.get(index);
 		}
 	}
@@ -0,0 +1,111 @@
+package terminal;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import terminal.Event.InternalEvent;
+
+/**
+ * La clase CommandScheduler mantiene los comandos programados para un instante
+ * futuro en una unica rueda de tiempo atendida por un solo thread. El thread
+ * duerme hasta el tick del proximo comando, y solo es despertado antes si se
+ * programa un comando que vence previamente. Los comandos que vencen en un
+ * mismo tick se notifican juntos en un unico evento.
+ */
+final class CommandScheduler extends EventSourceI<InternalEvent> implements AutoCloseable {
+
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+	private static final int WHEEL_SIZE = 512;
+
+	private final EventSource<InternalEvent> eventSource;
+	private final TimingWheel<QSYPacket> timingWheel;
+	private final Thread schedulerTask;
+
+	/**
+	 * Tick hasta el cual duerme el thread, o Long.MAX_VALUE si no hay comandos
+	 * programados.
+	 */
+	private volatile long wakeUpTick;
+
+	private volatile boolean closed;
+
+	public CommandScheduler() {
+		this.eventSource = new EventSource<>();
+		this.timingWheel = new TimingWheel<>(TICK_NANOS, WHEEL_SIZE, System.nanoTime());
+		this.wakeUpTick = Long.MAX_VALUE;
+		this.closed = false;
+		this.schedulerTask = new Thread(new SchedulerTask(), "CommandScheduler");
+		this.schedulerTask.start();
+	}
+
+	/**
+	 * Programa el envio del paquete para el instante indicado, expresado segun
+	 * System.nanoTime.
+	 */
+	public void schedule(QSYPacket packet, long deadlineNanos) {
+		timingWheel.schedule(packet, deadlineNanos);
+		if (deadlineNanos / TICK_NANOS < wakeUpTick)
+			LockSupport.unpark(schedulerTask);
+	}
+
+	@Override
+	public void addListener(EventListener<InternalEvent> eventListener) {
+		eventSource.addListener(eventListener);
+	}
+
+	@Override
+	public void removeListener(EventListener<InternalEvent> eventListener) {
+		eventSource.removeListener(eventListener);
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		if (!closed) {
+			closed = true;
+			LockSupport.unpark(schedulerTask);
+			try {
+				schedulerTask.join();
+			} finally {
+				eventSource.close();
+			}
+		}
+	}
+
+	private final class SchedulerTask implements Runnable {
+
+		private final ArrayList<QSYPacket> expired = new ArrayList<>();
+
+		@Override
+		public void run() {
+			while (!closed) {
+				try {
+					if (timingWheel.advance(System.nanoTime(), expired) > 0) {
+						eventSource.sendEvent(new InternalEvent.ScheduledCommands(new ArrayList<>(expired)));
+						expired.clear();
+					}
+
+					// El tick se publica antes de revisar los comandos recien programados,
+					// para que un comando programado en el medio no quede sin despertar al
+					// thread.
+					long nextTick = timingWheel.nextTick();
+					wakeUpTick = nextTick;
+					if (timingWheel.hasPendingEntries())
+						continue;
+
+					if (nextTick == Long.MAX_VALUE) {
+						LockSupport.park(this);
+					} else {
+						long delay = nextTick * TICK_NANOS - System.nanoTime();
+						if (delay > 0)
+							LockSupport.parkNanos(this, delay);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,74 @@
+package terminal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import terminal.QSYPacket.PacketType;
+
+/**
+ * La clase CommandTemplate contiene una trama de comando pre-codificada para un
+ * par (color, delay). Al momento de enviarla solo se completan el id y el paso
+ * sobre el buffer de destino, evitando validar y codificar el paquete completo
+ * en cada envio. Las instancias se obtienen desde un cache compartido y son de
+ * solo lectura.
+ */
+final class CommandTemplate {
+
+	private static final int MAX_CACHED_TEMPLATES = 256;
+	private static final ConcurrentHashMap<Long, CommandTemplate> templates = new ConcurrentHashMap<>();
+
+	private final Color color;
+	private final long delay;
+	private final byte[] frame;
+
+	private CommandTemplate(Color color, long delay) {
+		this.color = color;
+		this.delay = delay;
+		this.frame = new byte[QSYPacket.PACKET_SIZE];
+		new QSYFrame().wrap(ByteBuffer.wrap(frame), 0).putHeader(PacketType.Command).putColor(color).putDelay(delay);
+	}
+
+	/**
+	 * Devuelve la plantilla correspondiente al color y delay indicados. Las mismas
+	 * se validan una unica vez, al ser creadas.
+	 */
+	public static CommandTemplate get(Color color, long delay) throws IllegalArgumentException {
+		if (color == null)
+			throw new IllegalArgumentException("El QSYPacket no posee el color correspondiente.");
+		else if (delay < QSYPacket.MIN_DELAY_SIZE || delay > QSYPacket.MAX_DELAY_SIZE)
+			throw new IllegalArgumentException("El delay debe estar entre [" + QSYPacket.MIN_DELAY_SIZE + " ; " + QSYPacket.MAX_DELAY_SIZE + "]");
+
+		Long key = (delay << 3) | color.getIndex();
+		CommandTemplate template = templates.get(key);
+		if (template == null) {
+			template = new CommandTemplate(color, delay);
+			if (templates.size() < MAX_CACHED_TEMPLATES) {
+				CommandTemplate previous = templates.putIfAbsent(key, template);
+				if (previous != null)
+					template = previous;
+			}
+		}
+		return template;
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	public long getDelay() {
+		return delay;
+	}
+
+	/**
+	 * Copia la plantilla sobre la trama en la que esta posicionado el flyweight y
+	 * completa el id y el paso correspondientes.
+	 */
+	public void encode(QSYFrame target, int physicalId, int numberOfStep) {
+		ByteBuffer buffer = target.getBuffer();
+		int offset = target.getOffset();
+		for (int i = 0; i < QSYPacket.PACKET_SIZE; i++)
+			buffer.put(offset + i, frame[i]);
+		target.putPhysicalId(physicalId).putNumberOfStep(numberOfStep);
+	}
+
+}
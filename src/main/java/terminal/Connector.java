@@ -0,0 +1,283 @@
+package terminal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import terminal.Event.InternalEvent;
+
+/**
+ * La clase Connector establece las conexiones TCP hacia los nodos descubiertos
+ * sin bloquear al MainController. Las conexiones se inician en forma no
+ * bloqueante desde un unico thread manejado por un Selector, por lo que varios
+ * nodos se conectan en paralelo. Cada intento posee un tiempo maximo, y la
+ * cantidad de intentos en curso se encuentra acotada. Un intento puede
+ * postergarse, lo cual permite reintentar con espera creciente. El resultado de
+ * cada intento se informa mediante un evento.
+ */
+final class Connector extends EventSourceI<InternalEvent> implements AutoCloseable {
+
+	private final EventSource<InternalEvent> eventSource;
+	private final ConcurrentLinkedQueue<ConnectRequest> pendingTasks;
+	private final AtomicBoolean wakenUp;
+	private final Selector selector;
+
+	private final int maxConcurrentConnects;
+	private final long connectTimeout;
+
+	/**
+	 * Intentos postergados, ordenados por el instante en el que deben iniciarse.
+	 * Solo es accedido por el thread del Connector.
+	 */
+	private final PriorityQueue<ConnectRequest> delayed;
+	/**
+	 * Nodos que esperan a que finalice algun intento en curso. Solo es accedido
+	 * por el thread del Connector.
+	 */
+	private final ArrayDeque<QSYPacket> waiting;
+	/**
+	 * Intentos en curso, ordenados por su tiempo limite ya que todos poseen el
+	 * mismo tiempo maximo. Solo es accedido por el thread del Connector.
+	 */
+	private final ArrayDeque<ConnectAttempt> inProgress;
+	private int connecting;
+
+	private final Thread connectorTask;
+
+	private volatile boolean closed;
+
+	public Connector(int maxConcurrentConnects, int connectTimeout) throws IOException {
+		this.eventSource = new EventSource<>();
+		this.pendingTasks = new ConcurrentLinkedQueue<>();
+		this.wakenUp = new AtomicBoolean(false);
+		this.selector = Selector.open();
+
+		this.maxConcurrentConnects = maxConcurrentConnects;
+		this.connectTimeout = TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+		this.delayed = new PriorityQueue<>();
+		this.waiting = new ArrayDeque<>();
+		this.inProgress = new ArrayDeque<>();
+		this.connecting = 0;
+
+		this.closed = false;
+		this.connectorTask = new Thread(new ConnectorTask(), "Connector");
+		this.connectorTask.start();
+	}
+
+	/**
+	 * Solicita conectarse al nodo que envio el QSYHelloPacket indicado.
+	 */
+	public void connect(QSYPacket helloPacket) {
+		connect(helloPacket, 0);
+	}
+
+	/**
+	 * Solicita conectarse al nodo que envio el QSYHelloPacket indicado, luego de
+	 * esperar la cantidad de milisegundos indicada.
+	 */
+	public void connect(QSYPacket helloPacket, long delay) {
+		pendingTasks.add(new ConnectRequest(helloPacket, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay)));
+		if (wakenUp.compareAndSet(false, true))
+			selector.wakeup();
+	}
+
+	@Override
+	public void addListener(EventListener<InternalEvent> eventListener) {
+		eventSource.addListener(eventListener);
+	}
+
+	@Override
+	public void removeListener(EventListener<InternalEvent> eventListener) {
+		eventSource.removeListener(eventListener);
+	}
+
+	@Override
+	public void close() throws IOException, InterruptedException {
+		if (!closed) {
+			closed = true;
+			try {
+				selector.close();
+			} finally {
+				try {
+					connectorTask.join();
+				} finally {
+					for (ConnectAttempt attempt : inProgress) {
+						try {
+							if (!attempt.finished)
+								attempt.channel.close();
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+					inProgress.clear();
+					delayed.clear();
+					waiting.clear();
+					pendingTasks.clear();
+					eventSource.close();
+				}
+			}
+		}
+	}
+
+	private void startConnects() {
+		ConnectRequest request;
+		while ((request = pendingTasks.poll()) != null)
+			delayed.add(request);
+		long currentTime = System.nanoTime();
+		while ((request = delayed.peek()) != null && request.startTime - currentTime <= 0)
+			waiting.add(delayed.poll().helloPacket);
+
+		QSYPacket helloPacket;
+		while (connecting < maxConcurrentConnects && (helloPacket = waiting.poll()) != null) {
+			SocketChannel channel = null;
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				if (channel.connect(new InetSocketAddress(helloPacket.getNodeAddress(), QSYPacket.TCP_PORT))) {
+					eventSource.sendEvent(new InternalEvent.NodeConnected(helloPacket, channel));
+				} else {
+					ConnectAttempt attempt = new ConnectAttempt(helloPacket, channel, System.nanoTime() + connectTimeout);
+					channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+					inProgress.add(attempt);
+					++connecting;
+				}
+			} catch (IOException e) {
+				fail(helloPacket, channel);
+			}
+		}
+	}
+
+	private void finishConnect(SelectionKey key) {
+		ConnectAttempt attempt = (ConnectAttempt) key.attachment();
+		try {
+			if (!attempt.channel.finishConnect())
+				return;
+			key.cancel();
+			attempt.finished = true;
+			--connecting;
+			eventSource.sendEvent(new InternalEvent.NodeConnected(attempt.helloPacket, attempt.channel));
+		} catch (IOException e) {
+			attempt.finished = true;
+			--connecting;
+			fail(attempt.helloPacket, attempt.channel);
+		}
+	}
+
+	/**
+	 * Descarta los intentos finalizados y los que superaron su tiempo limite.
+	 */
+	private void expireConnects() {
+		long currentTime = System.nanoTime();
+		ConnectAttempt attempt;
+		while ((attempt = inProgress.peek()) != null) {
+			if (!attempt.finished && attempt.deadline - currentTime > 0)
+				return;
+
+			inProgress.poll();
+			if (!attempt.finished) {
+				attempt.finished = true;
+				--connecting;
+				fail(attempt.helloPacket, attempt.channel);
+			}
+		}
+	}
+
+	/**
+	 * Devuelve los milisegundos restantes hasta el proximo tiempo limite o inicio
+	 * de un intento postergado, o 0 si no existe ninguno.
+	 */
+	private long nextTimeout() {
+		long next = Long.MAX_VALUE;
+		long currentTime = System.nanoTime();
+		ConnectAttempt attempt = inProgress.peek();
+		if (attempt != null)
+			next = attempt.deadline - currentTime;
+		ConnectRequest request = delayed.peek();
+		if (request != null)
+			next = Math.min(next, request.startTime - currentTime);
+		return (next == Long.MAX_VALUE) ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(next));
+	}
+
+	private void fail(QSYPacket helloPacket, SocketChannel channel) {
+		try {
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			eventSource.sendEvent(new InternalEvent.NodeConnectionFailed(helloPacket));
+		}
+	}
+
+	private static final class ConnectRequest implements Comparable<ConnectRequest> {
+
+		private final QSYPacket helloPacket;
+		private final long startTime;
+
+		public ConnectRequest(QSYPacket helloPacket, long startTime) {
+			this.helloPacket = helloPacket;
+			this.startTime = startTime;
+		}
+
+		@Override
+		public int compareTo(ConnectRequest request) {
+			return Long.signum(startTime - request.startTime);
+		}
+
+	}
+
+	private static final class ConnectAttempt {
+
+		private final QSYPacket helloPacket;
+		private final SocketChannel channel;
+		private final long deadline;
+		private boolean finished;
+
+		public ConnectAttempt(QSYPacket helloPacket, SocketChannel channel, long deadline) {
+			this.helloPacket = helloPacket;
+			this.channel = channel;
+			this.deadline = deadline;
+			this.finished = false;
+		}
+
+	}
+
+	private final class ConnectorTask implements Runnable {
+
+		private volatile boolean running = true;
+
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					selector.select(nextTimeout());
+					wakenUp.set(false);
+
+					for (SelectionKey key : selector.selectedKeys()) {
+						if (key.isValid() && key.isConnectable())
+							finishConnect(key);
+					}
+					selector.selectedKeys().clear();
+
+					expireConnects();
+					startConnects();
+				} catch (ClosedSelectorException e) {
+					running = false;
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+	}
+
+}
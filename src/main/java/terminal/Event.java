@@ -1,6 +1,8 @@
 package terminal;
 
 import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
 
 import terminal.QSYPacket.ToucheArgs;
 
@@ -9,9 +11,30 @@ import terminal.QSYPacket.ToucheArgs;
  */
 public abstract class Event {
 
+	/**
+	 * Valor devuelto por getSourceId cuando el evento no se asocia a un nodo.
+	 */
+	static final int NO_SOURCE = -1;
+
 	public Event() {
 	}
 
+	/**
+	 * Devuelve el id fisico del nodo que origino el evento, o NO_SOURCE si el
+	 * evento no se asocia a ningun nodo.
+	 */
+	int getSourceId() {
+		return NO_SOURCE;
+	}
+
+	/**
+	 * Devuelve la mascara que identifica al tipo del evento dentro de un
+	 * EventFilter.
+	 */
+	int getTypeMask() {
+		return EventFilter.OTHER;
+	}
+
 	/**
 	 * La clase ExternalEvent provee una interfaz para trabajar con eventos que se
 	 * generan dentro del sistema pero que pueden ser enviados hacia aplicaciones
@@ -51,6 +74,12 @@ public abstract class Event {
 			public default void visit(ExecutionInterrupted event) {
 			}
 
+			public default void visit(ReconnectingNode event) {
+			}
+
+			public default void visit(ReconnectedNode event) {
+			}
+
 		}
 
 		/**
@@ -74,6 +103,16 @@ public abstract class Event {
 				return physicalId;
 			}
 
+			@Override
+			int getSourceId() {
+				return physicalId;
+			}
+
+			@Override
+			int getTypeMask() {
+				return EventFilter.CONNECTED_NODE;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -102,12 +141,107 @@ public abstract class Event {
 				return physicalId;
 			}
 
+			@Override
+			int getSourceId() {
+				return physicalId;
+			}
+
+			@Override
+			int getTypeMask() {
+				return EventFilter.DISCONNECTED_NODE;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
 			}
 		}
 
+		/**
+		 * El evento que determina que se perdio la conexion con un nodo y que se
+		 * intentara reconectarlo. Si la reconexion falla se informa un
+		 * DisconnectedNode.
+		 */
+		public static final class ReconnectingNode extends ExternalEvent {
+
+			private final InetAddress nodeAddress;
+			private final int physicalId;
+
+			public ReconnectingNode(int physicalId, InetAddress nodeAddress) {
+				this.physicalId = physicalId;
+				this.nodeAddress = nodeAddress;
+			}
+
+			public InetAddress getNodeAddress() {
+				return nodeAddress;
+			}
+
+			public int getPhysicalId() {
+				return physicalId;
+			}
+
+			@Override
+			int getSourceId() {
+				return physicalId;
+			}
+
+			@Override
+			int getTypeMask() {
+				return EventFilter.RECONNECTING_NODE;
+			}
+
+			@Override
+			public void accept(ExternalEventVisitor visitor) {
+				visitor.visit(this);
+			}
+
+		}
+
+		/**
+		 * El evento que determina que un nodo que habia perdido la conexion fue
+		 * reconectado, junto con el tiempo que demoro la reconexion en milisegundos.
+		 */
+		public static final class ReconnectedNode extends ExternalEvent {
+
+			private final InetAddress nodeAddress;
+			private final int physicalId;
+			private final long latency;
+
+			public ReconnectedNode(int physicalId, InetAddress nodeAddress, long latency) {
+				this.physicalId = physicalId;
+				this.nodeAddress = nodeAddress;
+				this.latency = latency;
+			}
+
+			public InetAddress getNodeAddress() {
+				return nodeAddress;
+			}
+
+			public int getPhysicalId() {
+				return physicalId;
+			}
+
+			@Override
+			int getSourceId() {
+				return physicalId;
+			}
+
+			public long getLatency() {
+				return latency;
+			}
+
+			@Override
+			int getTypeMask() {
+				return EventFilter.RECONNECTED_NODE;
+			}
+
+			@Override
+			public void accept(ExternalEventVisitor visitor) {
+				visitor.visit(this);
+			}
+
+		}
+
 		/**
 		 * El evento que determina que se ha recibido un paquete Touche por parte de
 		 * algun nodo conectado al sistema.
@@ -124,6 +258,16 @@ public abstract class Event {
 				return toucheArgs;
 			}
 
+			@Override
+			int getSourceId() {
+				return toucheArgs.getPhysicalId();
+			}
+
+			@Override
+			int getTypeMask() {
+				return EventFilter.TOUCHE;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -139,6 +283,11 @@ public abstract class Event {
 			public ExecutionStarted() {
 			}
 
+			@Override
+			int getTypeMask() {
+				return EventFilter.EXECUTION_STARTED;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -155,6 +304,11 @@ public abstract class Event {
 			public ExecutionFinished() {
 			}
 
+			@Override
+			int getTypeMask() {
+				return EventFilter.EXECUTION_FINISHED;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -169,6 +323,11 @@ public abstract class Event {
 			public StepTimeOut() {
 			}
 
+			@Override
+			int getTypeMask() {
+				return EventFilter.STEP_TIME_OUT;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -206,6 +365,11 @@ public abstract class Event {
 				return reason.getReason();
 			}
 
+			@Override
+			int getTypeMask() {
+				return EventFilter.EXECUTION_INTERRUPTED;
+			}
+
 			@Override
 			public void accept(ExternalEventVisitor visitor) {
 				visitor.visit(this);
@@ -226,6 +390,8 @@ public abstract class Event {
 
 			public abstract void visit(IncomingPacket event) throws Exception;
 
+			public abstract void visit(IncomingTouche event) throws Exception;
+
 			public abstract void visit(KeepAliveError event) throws Exception;
 
 			public abstract void visit(CloseSignal event) throws Exception;
@@ -235,13 +401,43 @@ public abstract class Event {
 			public abstract void visit(ExecutionFinished event) throws Exception;
 
 			public abstract void visit(StepTimeOut event) throws Exception;
+
+			public abstract void visit(SenderOverflow event) throws Exception;
+
+			public abstract void visit(ScheduledCommands event) throws Exception;
+
+			public abstract void visit(NodeConnected event) throws Exception;
+
+			public abstract void visit(NodeConnectionFailed event) throws Exception;
 		}
 
 		static final class KeepAliveError extends InternalEvent {
 
+			private final int[] physicalIds;
+
+			public KeepAliveError(int[] physicalIds) {
+				this.physicalIds = physicalIds;
+			}
+
+			/**
+			 * Devuelve los ids fisicos de los nodos que vencieron en un mismo tick.
+			 */
+			public int[] getPhysicalIds() {
+				return physicalIds;
+			}
+
+			@Override
+			public void accept(InternalEventVisitor visitor) throws Exception {
+				visitor.visit(this);
+			}
+
+		}
+
+		static final class SenderOverflow extends InternalEvent {
+
 			private final int physicalId;
 
-			public KeepAliveError(int physicalId) {
+			public SenderOverflow(int physicalId) {
 				this.physicalId = physicalId;
 			}
 
@@ -256,6 +452,69 @@ public abstract class Event {
 
 		}
 
+		static final class ScheduledCommands extends InternalEvent {
+
+			private final List<QSYPacket> packets;
+
+			public ScheduledCommands(List<QSYPacket> packets) {
+				this.packets = packets;
+			}
+
+			public List<QSYPacket> getPackets() {
+				return packets;
+			}
+
+			@Override
+			public void accept(InternalEventVisitor visitor) throws Exception {
+				visitor.visit(this);
+			}
+
+		}
+
+		static final class NodeConnected extends InternalEvent {
+
+			private final QSYPacket helloPacket;
+			private final SocketChannel socketChannel;
+
+			public NodeConnected(QSYPacket helloPacket, SocketChannel socketChannel) {
+				this.helloPacket = helloPacket;
+				this.socketChannel = socketChannel;
+			}
+
+			public QSYPacket getHelloPacket() {
+				return helloPacket;
+			}
+
+			public SocketChannel getSocketChannel() {
+				return socketChannel;
+			}
+
+			@Override
+			public void accept(InternalEventVisitor visitor) throws Exception {
+				visitor.visit(this);
+			}
+
+		}
+
+		static final class NodeConnectionFailed extends InternalEvent {
+
+			private final QSYPacket helloPacket;
+
+			public NodeConnectionFailed(QSYPacket helloPacket) {
+				this.helloPacket = helloPacket;
+			}
+
+			public QSYPacket getHelloPacket() {
+				return helloPacket;
+			}
+
+			@Override
+			public void accept(InternalEventVisitor visitor) throws Exception {
+				visitor.visit(this);
+			}
+
+		}
+
 		static final class IncomingPacket extends InternalEvent {
 
 			private final QSYPacket packet;
@@ -275,6 +534,47 @@ public abstract class Event {
 
 		}
 
+		/**
+		 * Touche recibido por el Receiver. Sus campos se copian directamente desde la
+		 * trama, sin construir un QSYPacket.
+		 */
+		static final class IncomingTouche extends InternalEvent {
+
+			private final int physicalId;
+			private final int numberOfStep;
+			private final Color color;
+			private final long delay;
+
+			public IncomingTouche(int physicalId, int numberOfStep, Color color, long delay) {
+				this.physicalId = physicalId;
+				this.numberOfStep = numberOfStep;
+				this.color = color;
+				this.delay = delay;
+			}
+
+			public int getPhysicalId() {
+				return physicalId;
+			}
+
+			public int getNumberOfStep() {
+				return numberOfStep;
+			}
+
+			public Color getColor() {
+				return color;
+			}
+
+			public long getDelay() {
+				return delay;
+			}
+
+			@Override
+			public void accept(InternalEventVisitor visitor) throws Exception {
+				visitor.visit(this);
+			}
+
+		}
+
 		static final class CloseSignal extends InternalEvent {
 
 			public CloseSignal() {
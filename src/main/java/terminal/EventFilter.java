@@ -0,0 +1,107 @@
+package terminal;
+
+import java.util.IdentityHashMap;
+
+import terminal.Event.ExternalEvent;
+
+/**
+ * La clase EventFilter indica que eventos debe recibir un EventListener. Un
+ * filtro puede restringir los tipos de eventos y los nodos de los cuales se
+ * reciben eventos. Un filtro sin tipos acepta todos los tipos, y un filtro sin
+ * nodos acepta los eventos de todos los nodos. Los eventos que no se asocian a
+ * ningun nodo solo se filtran por su tipo. El filtro se copia al agregar el
+ * listener, por lo que modificarlo luego no tiene efecto sobre el mismo.
+ */
+public final class EventFilter {
+
+	static final int CONNECTED_NODE = 1 << 0;
+	static final int DISCONNECTED_NODE = 1 << 1;
+	static final int RECONNECTING_NODE = 1 << 2;
+	static final int RECONNECTED_NODE = 1 << 3;
+	static final int TOUCHE = 1 << 4;
+	static final int EXECUTION_STARTED = 1 << 5;
+	static final int EXECUTION_FINISHED = 1 << 6;
+	static final int STEP_TIME_OUT = 1 << 7;
+	static final int EXECUTION_INTERRUPTED = 1 << 8;
+	/**
+	 * Tipo de los eventos que no poseen una mascara propia.
+	 */
+	static final int OTHER = 1 << 31;
+	static final int ALL_TYPES = -1;
+
+	private static final IdentityHashMap<Class<?>, Integer> types;
+	static {
+		types = new IdentityHashMap<>();
+		types.put(ExternalEvent.ConnectedNode.class, CONNECTED_NODE);
+		types.put(ExternalEvent.DisconnectedNode.class, DISCONNECTED_NODE);
+		types.put(ExternalEvent.ReconnectingNode.class, RECONNECTING_NODE);
+		types.put(ExternalEvent.ReconnectedNode.class, RECONNECTED_NODE);
+		types.put(ExternalEvent.Touche.class, TOUCHE);
+		types.put(ExternalEvent.ExecutionStarted.class, EXECUTION_STARTED);
+		types.put(ExternalEvent.ExecutionFinished.class, EXECUTION_FINISHED);
+		types.put(ExternalEvent.StepTimeOut.class, STEP_TIME_OUT);
+		types.put(ExternalEvent.ExecutionInterrupted.class, EXECUTION_INTERRUPTED);
+	}
+
+	private int typeMask;
+	/**
+	 * Conjunto de 65536 bits, indexado por id fisico, de los nodos aceptados, o
+	 * null si se aceptan todos los nodos.
+	 */
+	private long[] nodes;
+
+	public EventFilter() {
+		this.typeMask = ALL_TYPES;
+		this.nodes = null;
+	}
+
+	EventFilter(EventFilter filter) {
+		this.typeMask = filter.typeMask;
+		this.nodes = (filter.nodes == null) ? null : filter.nodes.clone();
+	}
+
+	/**
+	 * Agrega el tipo de evento indicado a los tipos aceptados.
+	 */
+	public void addType(Class<? extends ExternalEvent> type) {
+		Integer mask = (type == null) ? null : types.get(type);
+		if (mask == null)
+			throw new IllegalArgumentException("El tipo de evento debe ser valido.");
+		if (typeMask == ALL_TYPES)
+			typeMask = 0;
+		typeMask |= mask;
+	}
+
+	/**
+	 * Agrega el nodo indicado a los nodos aceptados. El id reservado
+	 * QSYPacket.BROADCAST_ID no corresponde a ningun nodo.
+	 */
+	public void addNode(int physicalId) {
+		if (physicalId < QSYPacket.MIN_ID_SIZE || physicalId > QSYPacket.MAX_ID_SIZE)
+			throw new IllegalArgumentException("El id debe estar entre [" + QSYPacket.MIN_ID_SIZE + " ; " + QSYPacket.MAX_ID_SIZE + "]");
+		else if (physicalId == QSYPacket.BROADCAST_ID)
+			throw new IllegalArgumentException("El id " + QSYPacket.BROADCAST_ID + " esta reservado para los comandos dirigidos a todos los nodos.");
+		if (nodes == null)
+			nodes = new long[(QSYPacket.MAX_ID_SIZE + 1) / Long.SIZE];
+		nodes[physicalId >>> 6] |= 1L << physicalId;
+	}
+
+	int getTypeMask() {
+		return typeMask;
+	}
+
+	/**
+	 * Devuelve true si el filtro acepta un evento del tipo y nodo indicados, sin
+	 * necesidad de crear el evento.
+	 */
+	boolean accepts(int eventType, int physicalId) {
+		if ((typeMask & eventType) == 0)
+			return false;
+		return nodes == null || physicalId == Event.NO_SOURCE || (nodes[physicalId >>> 6] & (1L << physicalId)) != 0;
+	}
+
+	boolean accepts(Event event) {
+		return accepts(event.getTypeMask(), event.getSourceId());
+	}
+
+}
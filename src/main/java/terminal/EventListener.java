@@ -1,21 +1,70 @@
 package terminal;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Las clases que quieran recibir eventos asincronicamente deben extender de
  * esta clase. La misma provee funcionalidades para depositar eventos en una
- * cola bloqueante y ser atendidos desde el otro lado.
+ * cola bloqueante y ser atendidos desde el otro lado. Por defecto la cola no
+ * posee limite, aunque puede crearse con una capacidad fija y una politica a
+ * aplicar cuando el consumidor no alcanza a atender los eventos.
  */
-public class EventListener<T extends Event> {
+public class EventListener<T extends Event> implements EventSink<T> {
 
-	private final BlockingQueue<T> eventQueue;
+	/**
+	 * Politica a aplicar cuando la cola de un EventListener de capacidad fija se
+	 * encuentra llena.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Quien deposita el evento espera hasta que se libere lugar. Debe utilizarse
+		 * con cuidado, ya que un consumidor detenido detiene a la Terminal.
+		 */
+		Block,
+		/**
+		 * Se descarta el evento nuevo.
+		 */
+		DropNewest,
+		/**
+		 * Se descarta el evento pendiente mas antiguo.
+		 */
+		DropOldest,
+		/**
+		 * El evento nuevo reemplaza al pendiente del mismo tipo y nodo, conservando su
+		 * lugar en la cola. Si no existe ninguno, se descarta el evento pendiente mas
+		 * antiguo.
+		 */
+		Coalesce
+	}
+
+	private final EventQueue<T> eventQueue;
 
 	public EventListener() {
-		this.eventQueue = new LinkedBlockingQueue<>();
+		this(new EventQueue.UnboundedEventQueue<T>());
 	}
 
+	/**
+	 * Crea un EventListener cuya cola admite como maximo la cantidad de eventos
+	 * indicada, aplicando la politica de desborde cuando la misma se llena.
+	 */
+	public EventListener(int capacity, OverflowPolicy overflowPolicy) {
+		this(newBoundedQueue(capacity, overflowPolicy));
+	}
+
+	EventListener(EventQueue<T> eventQueue) {
+		this.eventQueue = eventQueue;
+	}
+
+	private static <T extends Event> EventQueue<T> newBoundedQueue(int capacity, OverflowPolicy overflowPolicy) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("La capacidad de la cola debe ser mayor a 0.");
+		if (overflowPolicy == null)
+			throw new IllegalArgumentException("La politica de desborde debe ser valida.");
+		return new BoundedEventQueue<>(capacity, overflowPolicy);
+	}
+
+	@Override
 	public final void receiveEvent(T event) {
 		eventQueue.add(event);
 	}
@@ -24,4 +73,48 @@ public class EventListener<T extends Event> {
 		return eventQueue.take();
 	}
 
+	/**
+	 * Retira el proximo evento, esperando como maximo el tiempo indicado. Devuelve
+	 * null si no llego ningun evento.
+	 */
+	public final T pollEvent(long timeout, TimeUnit unit) throws InterruptedException {
+		return eventQueue.poll(timeout, unit);
+	}
+
+	/**
+	 * Retira sin esperar hasta maxEvents eventos pendientes, en el orden en que
+	 * fueron recibidos, y los agrega a la coleccion indicada. Devuelve la cantidad
+	 * de eventos retirados. Permite atender todos los eventos acumulados con una
+	 * unica llamada.
+	 */
+	public final int drainEvents(Collection<? super T> events, int maxEvents) {
+		if (maxEvents <= 0)
+			throw new IllegalArgumentException("La cantidad maxima de eventos debe ser mayor a 0.");
+		return eventQueue.drainTo(events, maxEvents);
+	}
+
+	/**
+	 * Devuelve los contadores de la cola de eventos, incluyendo la cantidad de
+	 * eventos descartados o combinados por la politica de desborde.
+	 */
+	public final EventQueueStatistics getQueueStatistics() {
+		return eventQueue.getStatistics();
+	}
+
+	/**
+	 * Devuelve true si desde la ultima llamada a clearFallenBehind la cola se
+	 * lleno, es decir, si algun evento fue descartado o combinado, o si quien lo
+	 * deposito debio esperar.
+	 */
+	public final boolean hasFallenBehind() {
+		return eventQueue.hasFallenBehind();
+	}
+
+	/**
+	 * Vuelve a comenzar la deteccion de atrasos informada por hasFallenBehind.
+	 */
+	public final void clearFallenBehind() {
+		eventQueue.clearFallenBehind();
+	}
+
 }
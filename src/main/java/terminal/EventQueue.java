@@ -0,0 +1,106 @@
+package terminal;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La interfaz EventQueue representa la cola en la que un EventListener
+ * deposita los eventos recibidos hasta que son atendidos. Multiples threads
+ * pueden depositar eventos al mismo tiempo, pero solo un thread los retira.
+ */
+interface EventQueue<T> {
+
+	/**
+	 * Deposita un evento en la cola.
+	 */
+	public void add(T event);
+
+	/**
+	 * Retira el proximo evento de la cola, esperando hasta que exista alguno.
+	 */
+	public T take() throws InterruptedException;
+
+	/**
+	 * Retira el proximo evento de la cola, esperando como maximo el tiempo
+	 * indicado. Devuelve null si no llego ningun evento.
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Retira sin esperar hasta maxEvents eventos pendientes y los agrega a la
+	 * coleccion indicada. Devuelve la cantidad de eventos retirados.
+	 */
+	public int drainTo(Collection<? super T> events, int maxEvents);
+
+	/**
+	 * Devuelve una copia de los contadores de la cola.
+	 */
+	public EventQueueStatistics getStatistics();
+
+	/**
+	 * Devuelve true si desde la ultima llamada a clearFallenBehind algun evento
+	 * fue descartado o combinado, o algun productor debio esperar por lugar en la
+	 * cola.
+	 */
+	public boolean hasFallenBehind();
+
+	/**
+	 * Vuelve a comenzar la deteccion de atrasos informada por hasFallenBehind.
+	 */
+	public void clearFallenBehind();
+
+	/**
+	 * Cola sin limite de capacidad basada en una LinkedBlockingQueue. Es la cola
+	 * utilizada por defecto.
+	 */
+	static final class UnboundedEventQueue<T> implements EventQueue<T> {
+
+		private final LinkedBlockingQueue<T> queue;
+		private volatile int maxDepth;
+
+		public UnboundedEventQueue() {
+			this.queue = new LinkedBlockingQueue<>();
+			this.maxDepth = 0;
+		}
+
+		@Override
+		public void add(T event) {
+			queue.add(event);
+			int depth = queue.size();
+			if (depth > maxDepth)
+				maxDepth = depth;
+		}
+
+		@Override
+		public T take() throws InterruptedException {
+			return queue.take();
+		}
+
+		@Override
+		public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+			return queue.poll(timeout, unit);
+		}
+
+		@Override
+		public int drainTo(Collection<? super T> events, int maxEvents) {
+			return queue.drainTo(events, maxEvents);
+		}
+
+		@Override
+		public EventQueueStatistics getStatistics() {
+			return new EventQueueStatistics(0, queue.size(), maxDepth, 0, 0, 0, 0);
+		}
+
+		@Override
+		public boolean hasFallenBehind() {
+			return false;
+		}
+
+		@Override
+		public void clearFallenBehind() {
+		}
+
+	}
+
+}
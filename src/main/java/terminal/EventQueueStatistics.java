@@ -0,0 +1,85 @@
+package terminal;
+
+/**
+ * La clase EventQueueStatistics contiene una copia de los contadores de una
+ * cola de eventos. Un productor se demora cuando encuentra la cola llena y debe
+ * esperar a que se libere lugar. Segun la politica de desborde, una cola llena
+ * tambien puede descartar eventos o combinarlos con otros pendientes.
+ */
+public final class EventQueueStatistics {
+
+	private final int capacity;
+	private final int depth;
+	private final int maxDepth;
+	private final long droppedEvents;
+	private final long coalescedEvents;
+	private final long producerStalls;
+	private final long producerStallNanos;
+
+	EventQueueStatistics(int capacity, int depth, int maxDepth, long droppedEvents, long coalescedEvents, long producerStalls, long producerStallNanos) {
+		this.capacity = capacity;
+		this.depth = depth;
+		this.maxDepth = maxDepth;
+		this.droppedEvents = droppedEvents;
+		this.coalescedEvents = coalescedEvents;
+		this.producerStalls = producerStalls;
+		this.producerStallNanos = producerStallNanos;
+	}
+
+	/**
+	 * Devuelve la capacidad de la cola, o 0 si la misma no posee limite.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Devuelve la cantidad de eventos pendientes.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Devuelve la mayor cantidad de eventos pendientes observada.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Devuelve la cantidad de eventos descartados por encontrarse la cola llena.
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents;
+	}
+
+	/**
+	 * Devuelve la cantidad de eventos que reemplazaron a otro pendiente del mismo
+	 * tipo y nodo.
+	 */
+	public long getCoalescedEvents() {
+		return coalescedEvents;
+	}
+
+	/**
+	 * Devuelve la cantidad de veces que un productor encontro la cola llena.
+	 */
+	public long getProducerStalls() {
+		return producerStalls;
+	}
+
+	/**
+	 * Devuelve el tiempo total que los productores esperaron por lugar en la cola,
+	 * en nanosegundos.
+	 */
+	public long getProducerStallNanos() {
+		return producerStallNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "CAPACITY = " + capacity + " || DEPTH = " + depth + " || MAX DEPTH = " + maxDepth + " || DROPPED EVENTS = " + droppedEvents + " || COALESCED EVENTS = " + coalescedEvents + " || PRODUCER STALLS = " + producerStalls + " || PRODUCER STALL NANOS = " + producerStallNanos;
+	}
+
+}
@@ -0,0 +1,12 @@
+package terminal;
+
+/**
+ * La interfaz EventSink representa a quien recibe los eventos enviados por un
+ * EventSource. Los EventListener depositan los eventos en una cola, mientras
+ * que otras implementaciones los entregan directamente a su destino.
+ */
+interface EventSink<T extends Event> {
+
+	public void receiveEvent(T event);
+
+}
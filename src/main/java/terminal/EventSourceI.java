@@ -1,7 +1,6 @@
 package terminal;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 abstract class EventSourceI<T extends Event> {
 
@@ -9,41 +8,97 @@ abstract class EventSourceI<T extends Event> {
 
 	public abstract void removeListener(EventListener<T> eventListener);
 
+	/**
+	 * Los listeners se guardan en un arreglo inmutable que se reemplaza al agregar
+	 * o quitar un listener, por lo que el envio de eventos no toma locks ni crea
+	 * objetos. Un listener agregado o quitado durante un envio recibe o no el
+	 * evento en curso segun el arreglo que haya leido el emisor. Cada listener
+	 * puede poseer un EventFilter, el cual se evalua antes de depositar el evento
+	 * en su cola.
+	 */
 	static final class EventSource<T extends Event> implements AutoCloseable {
 
-		private final List<Runnable> pendingActions;
-		private final List<EventListener<T>> listeners;
+		private static final Subscription<?>[] NO_SUBSCRIPTIONS = new Subscription<?>[0];
+
+		private volatile Subscription<T>[] subscriptions;
 
 		public EventSource() {
-			this.pendingActions = new LinkedList<>();
-			this.listeners = new LinkedList<>();
+			this.subscriptions = noSubscriptions();
+		}
+
+		public final void addListener(EventSink<T> eventListener) {
+			addListener(eventListener, null);
 		}
 
-		public synchronized final void addListener(EventListener<T> eventListener) {
-			pendingActions.add(() -> {
-				listeners.add(eventListener);
-			});
+		/**
+		 * Agrega un listener que solo recibe los eventos aceptados por el filtro
+		 * indicado, o todos los eventos si el filtro es null.
+		 */
+		public synchronized final void addListener(EventSink<T> eventListener, EventFilter filter) {
+			Subscription<T>[] current = subscriptions;
+			Subscription<T>[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = new Subscription<>(eventListener, (filter == null) ? null : new EventFilter(filter));
+			subscriptions = updated;
 		}
 
-		public synchronized final void removeListener(EventListener<T> eventListener) {
-			pendingActions.add(() -> {
-				if (eventListener != null)
-					listeners.remove(eventListener);
-			});
+		public synchronized final void removeListener(EventSink<T> eventListener) {
+			if (eventListener == null)
+				return;
+
+			Subscription<T>[] current = subscriptions;
+			for (int i = 0; i < current.length; i++) {
+				if (eventListener.equals(current[i].listener)) {
+					Subscription<T>[] updated = Arrays.copyOf(current, current.length - 1);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+					subscriptions = updated;
+					return;
+				}
+			}
 		}
 
-		public synchronized final void sendEvent(T event) {
-			for (Runnable runnable : pendingActions)
-				runnable.run();
-			pendingActions.clear();
-			for (EventListener<T> eventListener : listeners)
-				eventListener.receiveEvent(event);
+		public final void sendEvent(T event) {
+			Subscription<T>[] current = subscriptions;
+			for (int i = 0; i < current.length; i++) {
+				Subscription<T> subscription = current[i];
+				if (subscription.filter == null || subscription.filter.accepts(event))
+					subscription.listener.receiveEvent(event);
+			}
+		}
+
+		/**
+		 * Devuelve true si algun listener acepta un evento del tipo y nodo indicados.
+		 * Permite evitar la creacion de eventos que nadie recibiria.
+		 */
+		public final boolean hasListenersFor(int eventType, int physicalId) {
+			Subscription<T>[] current = subscriptions;
+			for (int i = 0; i < current.length; i++) {
+				EventFilter filter = current[i].filter;
+				if (filter == null || filter.accepts(eventType, physicalId))
+					return true;
+			}
+			return false;
 		}
 
 		@Override
 		public synchronized void close() {
-			pendingActions.clear();
-			listeners.clear();
+			subscriptions = noSubscriptions();
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T extends Event> Subscription<T>[] noSubscriptions() {
+			return (Subscription<T>[]) NO_SUBSCRIPTIONS;
+		}
+
+		private static final class Subscription<T extends Event> {
+
+			private final EventSink<T> listener;
+			private final EventFilter filter;
+
+			public Subscription(EventSink<T> listener, EventFilter filter) {
+				this.listener = listener;
+				this.filter = filter;
+			}
+
 		}
 	}
 }
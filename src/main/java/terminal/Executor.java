@@ -3,13 +3,14 @@ package terminal;
 import java.lang.reflect.Field;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import terminal.Event.InternalEvent;
-import terminal.QSYPacket.CommandArgs;
 import terminal.Routine.NodeConfiguration;
 import terminal.Routine.Step;
 
@@ -84,8 +85,7 @@ abstract class Executor extends EventSourceI<InternalEvent> implements AutoClose
 	}
 
 	private void turnAllNodes(Color color) {
-		for (int i = 0; i < biMap.size(); i++)
-			terminal.sendCommand(new CommandArgs(biMap.getPhysicalId(i), color, 0, 0), true);
+		terminal.sendCommand(CommandTemplate.get(color, 0), biMap.getPhysicalIds(), 0);
 	}
 
 	protected abstract boolean hasNextStep();
@@ -101,7 +101,7 @@ abstract class Executor extends EventSourceI<InternalEvent> implements AutoClose
 			long delay = configuration.getDelay();
 			if (delay > maxDelay)
 				maxDelay = delay;
-			terminal.sendCommand(new CommandArgs(physicalId, configuration.getColor(), delay, stepIndex), true);
+			terminal.sendCommand(CommandTemplate.get(configuration.getColor(), delay), physicalId, stepIndex);
 		}
 
 		expressionTree = new ExpressionTree(currentStep.getExpression());
@@ -111,11 +111,12 @@ abstract class Executor extends EventSourceI<InternalEvent> implements AutoClose
 	}
 
 	private void finalizeStep() {
+		CommandTemplate template = CommandTemplate.get(Color.NO_COLOR, 0);
 		for (NodeConfiguration nodeConfiguration : currentStep.getNodeConfigurationList()) {
 			int logicalId = nodeConfiguration.getLogicalId();
 			if (!touchedNodes[logicalId]) {
 				int physicalId = biMap.getPhysicalId(nodeConfiguration.getLogicalId());
-				terminal.sendCommand(new CommandArgs(physicalId, Color.NO_COLOR, 0, 0), true);
+				terminal.sendCommand(template, physicalId, 0);
 			}
 		}
 
@@ -194,10 +195,12 @@ abstract class Executor extends EventSourceI<InternalEvent> implements AutoClose
 	private static final class BiMap {
 
 		private final ArrayList<Integer> physicalIdNodes;
+		private final List<Integer> physicalIds;
 		private final TreeMap<Integer, Integer> logicalIdNodes;
 
 		public BiMap(ArrayList<Integer> physicalIdNodes) {
 			this.physicalIdNodes = physicalIdNodes;
+			this.physicalIds = Collections.unmodifiableList(physicalIdNodes);
 			this.logicalIdNodes = new TreeMap<>();
 			for (int i = 0; i < physicalIdNodes.size(); i++) {
 				int physicalId = physicalIdNodes.get(i);
@@ -221,6 +224,10 @@ abstract class Executor extends EventSourceI<InternalEvent> implements AutoClose
 			return physicalIdNodes.size();
 		}
 
+		public List<Integer> getPhysicalIds() {
+			return physicalIds;
+		}
+
 	}
 
 	private final class PreInitTask implements Runnable {
@@ -0,0 +1,95 @@
+package terminal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * La clase FrameDecoder extrae las tramas QSY del flujo de bytes recibido desde
+ * un nodo. En caso de encontrar bytes que no forman parte de una trama valida,
+ * los descarta hasta volver a encontrar la firma 'Q','S','Y' seguida de un
+ * tipo valido, por lo que un byte corrupto solo provoca la perdida de una
+ * trama y no de la conexion. Cada conexion posee su propio FrameDecoder. No es
+ * ThreadSafe, aunque sus contadores pueden leerse desde cualquier thread.
+ */
+final class FrameDecoder {
+
+	private final QSYFrame frame;
+	/**
+	 * Indica si la ultima trama se decodifico correctamente. Un tramo corrupto
+	 * puede rechazar varias posiciones candidatas, incluso a lo largo de varias
+	 * lecturas, pero se cuenta como una unica perdida de alineacion.
+	 */
+	private boolean aligned;
+
+	private volatile long resyncs;
+	private volatile long skippedBytes;
+
+	public FrameDecoder() {
+		this.frame = new QSYFrame();
+		this.aligned = true;
+		this.resyncs = 0;
+		this.skippedBytes = 0;
+	}
+
+	/**
+	 * Busca la proxima trama valida a partir de la posicion del buffer. En caso de
+	 * encontrarla, avanza la posicion del buffer hasta el final de la misma y
+	 * devuelve el QSYFrame posicionado sobre ella. Caso contrario, devuelve null y
+	 * la posicion queda sobre los bytes que aun pueden formar parte de una trama.
+	 */
+	public QSYFrame next(ByteBuffer buffer) {
+		int position = buffer.position();
+		int limit = buffer.limit();
+		while (limit - position >= QSYPacket.PACKET_SIZE) {
+			frame.wrap(buffer, position);
+			if (frame.hasValidSignature() && frame.hasValidType()) {
+				buffer.position(position + QSYPacket.PACKET_SIZE);
+				aligned = true;
+				return frame;
+			}
+
+			int next = findSignature(buffer, position + 1, limit);
+			if (aligned) {
+				aligned = false;
+				resyncs = resyncs + 1;
+			}
+			skippedBytes = skippedBytes + (next - position);
+			position = next;
+		}
+		buffer.position(position);
+		return null;
+	}
+
+	/**
+	 * Devuelve la cantidad de veces que se perdio la alineacion del flujo.
+	 */
+	public long getResyncs() {
+		return resyncs;
+	}
+
+	/**
+	 * Devuelve la cantidad de bytes descartados por no formar parte de una trama
+	 * valida.
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes;
+	}
+
+	/**
+	 * Devuelve la posicion del primer byte a partir de from que puede ser el
+	 * comienzo de una trama. Una firma incompleta al final del buffer se conserva
+	 * hasta recibir los bytes restantes.
+	 */
+	private static int findSignature(ByteBuffer buffer, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (buffer.get(i) != 'Q')
+				continue;
+			if (i + 1 < limit && buffer.get(i + 1) != 'S')
+				continue;
+			if (i + 2 < limit && buffer.get(i + 2) != 'Y')
+				continue;
+			return i;
+		}
+		return limit;
+	}
+
+}
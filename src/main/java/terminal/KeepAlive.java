@@ -1,56 +1,138 @@
 package terminal;
 
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import terminal.Event.InternalEvent;
 
+/**
+ * La clase KeepAlive detecta los nodos que dejaron de enviar paquetes. Para
+ * cada nodo se mantiene una ventana de los intervalos entre sus Keepalive, la
+ * cual es escrita sin tomar locks directamente desde el thread del Receiver que
+ * atiende al nodo. A partir de la media y el desvio de la ventana se calcula el
+ * nivel de sospecha phi de que el nodo haya fallado, por lo que los nodos con
+ * un enlace inestable toleran mayores demoras que los nodos con un enlace
+ * estable. Los vencimientos se verifican mediante una rueda de tiempo cuyas
+ * listas se encadenan sobre arreglos primitivos, por lo que en cada tick solo
+ * se visitan los nodos cuyo vencimiento corresponde al mismo. Los nodos
+ * vencidos en un mismo tick se informan en un unico evento. Un nodo vencido
+ * sigue siendo visitado hasta que es dado de baja, y si vuelve a recibirse un
+ * paquete del mismo su ventana se reinicia y se vuelve a vigilar.
+ */
 final class KeepAlive extends EventSourceI<InternalEvent> implements AutoCloseable {
 
-	private static final int ERROR_RATE = 50;
-	private static final int MAX_ALLOWED_TIME = (int) ((1 + ERROR_RATE / 100f) * QSYPacket.KEEP_ALIVE_MS);
-	private static final byte MAX_TRIES = 5;
-	private static final int DEAD_NODES_PURGER_PERIOD = (int) (MAX_ALLOWED_TIME * 1.5f);
+	private static final int WINDOW_SIZE = 64;
+	private static final int MIN_SAMPLES = 4;
+	private static final long KEEP_ALIVE = TimeUnit.MILLISECONDS.toNanos(QSYPacket.KEEP_ALIVE_MS);
+	private static final long MIN_STD_DEVIATION = KEEP_ALIVE / 5;
+
+	private static final int TICK_MS = 100;
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+	private static final int WHEEL_SIZE = 64;
+	private static final int NODES = QSYPacket.MAX_ID_SIZE + 1;
+
+	private static final byte ABSENT = 0;
+	private static final byte TRACKED = 1;
+	private static final byte REMOVED = 2;
+	private static final byte EXPIRED = 3;
+
+	private static final int NONE = -1;
 
 	private final EventSource<InternalEvent> eventSource;
-	private final TreeMap<Integer, KeepAliveInfo> nodes;
+	private final AtomicReferenceArray<LinkWindow> windows;
+	private final double threshold;
+	private final long acceptablePause;
+	/**
+	 * Cantidad de desvios por encima de la media a partir de la cual phi supera el
+	 * umbral.
+	 */
+	private final double thresholdDeviations;
+	/**
+	 * Altas y bajas pendientes, en orden. Las bajas se encolan como el complemento
+	 * del id fisico.
+	 */
+	private final ConcurrentLinkedQueue<Integer> pendingUpdates;
+
+	/**
+	 * Estado de cada nodo, su vencimiento, o el instante en que vencio si se
+	 * encuentra vencido, y el siguiente nodo de la misma posicion de la rueda.
+	 * Solo son accedidos por el thread del KeepAlive.
+	 */
+	private final byte[] state;
+	private final long[] deadline;
+	private final int[] next;
+	private final int[] wheel;
+	private final long startTime;
+	private long currentTick;
+
 	private final Thread keepAliveTask;
 
 	private volatile boolean closed;
 
-	public KeepAlive() {
+	public KeepAlive(double threshold, int acceptablePause) {
 		this.eventSource = new EventSource<>();
-		this.nodes = new TreeMap<>();
+		this.windows = new AtomicReferenceArray<>(NODES);
+		this.threshold = threshold;
+		this.acceptablePause = TimeUnit.MILLISECONDS.toNanos(acceptablePause);
+		this.thresholdDeviations = deviationsFor(threshold);
+		this.pendingUpdates = new ConcurrentLinkedQueue<>();
+
+		this.state = new byte[NODES];
+		this.deadline = new long[NODES];
+		this.next = new int[NODES];
+		this.wheel = new int[WHEEL_SIZE];
+		for (int i = 0; i < WHEEL_SIZE; i++)
+			wheel[i] = NONE;
+		this.startTime = System.nanoTime();
+		this.currentTick = 0;
+
 		this.closed = false;
 		this.keepAliveTask = new Thread(new KeepAliveTask(), "KeepAlive");
 		this.keepAliveTask.start();
 	}
 
 	public void newNode(int physicalId) {
-		long lastKeepAliveReceived = System.currentTimeMillis();
-		synchronized (nodes) {
-			if (!nodes.containsKey(physicalId)) {
-				nodes.put(physicalId, new KeepAliveInfo(physicalId, lastKeepAliveReceived));
-			}
-		}
+		windows.set(physicalId, new LinkWindow(System.nanoTime()));
+		pendingUpdates.add(physicalId);
 	}
 
 	public void keepAlive(int physicalId) {
-		long currentTime = System.currentTimeMillis();
-		synchronized (nodes) {
-			KeepAliveInfo info = nodes.get(physicalId);
-			if (info != null)
-				info.lastKeepAliveReceived = currentTime;
-		}
+		LinkWindow window = windows.get(physicalId);
+		if (window != null)
+			window.keepAlive(System.nanoTime());
 	}
 
+	/**
+	 * Un Touche demuestra que el nodo sigue activo, pero no forma parte de la
+	 * ventana de intervalos ya que no es periodico.
+	 */
 	public void touche(int physicalId) {
-		keepAlive(physicalId);
+		LinkWindow window = windows.get(physicalId);
+		if (window != null)
+			window.lastArrival = System.nanoTime();
 	}
 
 	public void removeNode(int physicalId) {
-		synchronized (nodes) {
-			nodes.remove(physicalId);
-		}
+		windows.set(physicalId, null);
+		pendingUpdates.add(~physicalId);
+	}
+
+	/**
+	 * Devuelve la calidad del enlace con el nodo indicado, o null si el nodo no se
+	 * encuentra conectado.
+	 */
+	public LinkQuality getLinkQuality(int physicalId) {
+		LinkWindow window = windows.get(physicalId);
+		if (window == null)
+			return null;
+
+		long currentTime = System.nanoTime();
+		double mean = window.getMean();
+		double deviation = window.getStdDeviation();
+		double phi = phi(currentTime - window.lastArrival, mean + acceptablePause, deviation);
+		return new LinkQuality(physicalId, window.getSamples(), mean / 1000000d, deviation / 1000000d, window.getLossRate(), phi, phi >= threshold);
 	}
 
 	@Override
@@ -71,22 +153,227 @@ final class KeepAlive extends EventSourceI<InternalEvent> implements AutoCloseab
 			try {
 				keepAliveTask.join();
 			} finally {
-				nodes.clear();
+				pendingUpdates.clear();
 				eventSource.close();
 			}
 		}
 	}
 
-	private static final class KeepAliveInfo {
+	private void schedule(int physicalId, long time) {
+		deadline[physicalId] = time;
+		link(physicalId, time);
+	}
+
+	private void link(int physicalId, long time) {
+		int slot = (int) (Math.max(currentTick + 1, ((time - startTime) / TICK) + 1) & (WHEEL_SIZE - 1));
+		next[physicalId] = wheel[slot];
+		wheel[slot] = physicalId;
+	}
+
+	private void updateNodes() {
+		Integer update;
+		while ((update = pendingUpdates.poll()) != null) {
+			int physicalId = update;
+			if (physicalId < 0) {
+				if (state[~physicalId] != ABSENT)
+					state[~physicalId] = REMOVED;
+			} else {
+				LinkWindow window = windows.get(physicalId);
+				if (state[physicalId] == ABSENT && window != null)
+					schedule(physicalId, deadline(window));
+				state[physicalId] = TRACKED;
+			}
+		}
+	}
+
+	/**
+	 * Avanza la rueda hasta el instante actual, visitando los nodos de cada
+	 * posicion recorrida. Los nodos que siguen activos se reprograman segun su
+	 * ultimo paquete recibido y su ventana de intervalos, y los nodos vencidos se
+	 * revisan en cada periodo de Keepalive. Devuelve los ids de los nodos que
+	 * vencieron, o null si no hay ninguno.
+	 */
+	private int[] advance(long currentTime) {
+		long targetTick = (currentTime - startTime) / TICK;
+		if (targetTick - currentTick > WHEEL_SIZE)
+			currentTick = targetTick - WHEEL_SIZE;
+
+		int[] expired = null;
+		int expiredCount = 0;
+		while (currentTick < targetTick) {
+			++currentTick;
+			int slot = (int) (currentTick & (WHEEL_SIZE - 1));
+			int physicalId = wheel[slot];
+			wheel[slot] = NONE;
+			while (physicalId != NONE) {
+				int nextId = next[physicalId];
+				LinkWindow window = windows.get(physicalId);
+				if (state[physicalId] == REMOVED || window == null) {
+					state[physicalId] = ABSENT;
+				} else if (state[physicalId] == EXPIRED) {
+					if (window.lastArrival - deadline[physicalId] > 0) {
+						// El nodo volvio a enviar paquetes sin ser dado de baja.
+						LinkWindow restarted = new LinkWindow(window.lastArrival);
+						if (!windows.compareAndSet(physicalId, window, restarted))
+							restarted = windows.get(physicalId);
+						if (restarted == null) {
+							state[physicalId] = ABSENT;
+						} else {
+							state[physicalId] = TRACKED;
+							schedule(physicalId, deadline(restarted));
+						}
+					} else {
+						link(physicalId, currentTime + KEEP_ALIVE);
+					}
+				} else if (deadline[physicalId] - currentTime > 0) {
+					schedule(physicalId, deadline[physicalId]);
+				} else {
+					long nodeDeadline = deadline(window);
+					if (nodeDeadline - currentTime > 0) {
+						schedule(physicalId, nodeDeadline);
+					} else {
+						state[physicalId] = EXPIRED;
+						deadline[physicalId] = currentTime;
+						link(physicalId, currentTime + KEEP_ALIVE);
+						if (expired == null)
+							expired = new int[4];
+						else if (expiredCount == expired.length)
+							expired = Arrays.copyOf(expired, expiredCount * 2);
+						expired[expiredCount++] = physicalId;
+					}
+				}
+				physicalId = nextId;
+			}
+		}
+		return (expired == null) ? null : Arrays.copyOf(expired, expiredCount);
+	}
+
+	/**
+	 * Devuelve el instante a partir del cual phi supera el umbral para el nodo.
+	 */
+	private long deadline(LinkWindow window) {
+		return window.lastArrival + (long) (window.getMean() + thresholdDeviations * window.getStdDeviation()) + acceptablePause;
+	}
+
+	/**
+	 * Calcula el nivel de sospecha para el tiempo transcurrido desde el ultimo
+	 * paquete, suponiendo que los intervalos siguen una distribucion normal. Se
+	 * utiliza una aproximacion logistica de la funcion de distribucion.
+	 */
+	private static double phi(double elapsed, double mean, double deviation) {
+		double y = (elapsed - mean) / deviation;
+		double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+		if (elapsed > mean)
+			return -Math.log10(e / (1 + e));
+		else
+			return -Math.log10(1 - 1 / (1 + e));
+	}
+
+	/**
+	 * Busca la cantidad de desvios por encima de la media para la cual phi
+	 * alcanza el umbral. Como phi es creciente, se utiliza busqueda binaria.
+	 */
+	private static double deviationsFor(double threshold) {
+		double low = 0;
+		double high = 64;
+		for (int i = 0; i < 64; i++) {
+			double middle = (low + high) / 2;
+			if (phi(middle, 0, 1) < threshold)
+				low = middle;
+			else
+				high = middle;
+		}
+		return high;
+	}
+
+	/**
+	 * Ventana de los ultimos intervalos entre Keepalive de un nodo. Solo es
+	 * escrita por el thread del Receiver que atiende al nodo, mientras que sus
+	 * estadisticas pueden leerse desde cualquier thread.
+	 */
+	private static final class LinkWindow {
 
-		private final int physicalId;
-		private volatile byte tries;
-		private volatile long lastKeepAliveReceived;
+		private final long[] intervals;
+		private final byte[] missed;
+		private int index;
 
-		public KeepAliveInfo(int physicalId, long lastKeepAliveReceived) {
-			this.physicalId = physicalId;
-			this.tries = 0;
-			this.lastKeepAliveReceived = lastKeepAliveReceived;
+		private volatile int samples;
+		private volatile long intervalSum;
+		private volatile double intervalSquareSum;
+		private volatile int missedSum;
+		private volatile long lastKeepAlive;
+		private volatile long lastArrival;
+
+		public LinkWindow(long currentTime) {
+			this.intervals = new long[WINDOW_SIZE];
+			this.missed = new byte[WINDOW_SIZE];
+			this.index = 0;
+			this.samples = 0;
+			this.lastKeepAlive = currentTime;
+			this.lastArrival = currentTime;
+		}
+
+		public void keepAlive(long currentTime) {
+			long interval = currentTime - lastKeepAlive;
+			lastKeepAlive = currentTime;
+			lastArrival = currentTime;
+
+			// Cada periodo completo sin recibir Keepalive se estima como una perdida.
+			byte lost = (byte) Math.min(Byte.MAX_VALUE, Math.max(0, Math.round((double) interval / KEEP_ALIVE) - 1));
+			int count = samples;
+			long sum = intervalSum;
+			double squareSum = intervalSquareSum;
+			int lostSum = missedSum;
+			if (count == WINDOW_SIZE) {
+				sum -= intervals[index];
+				squareSum -= (double) intervals[index] * intervals[index];
+				lostSum -= missed[index];
+			} else {
+				++count;
+			}
+			intervals[index] = interval;
+			missed[index] = lost;
+			index = (index + 1) & (WINDOW_SIZE - 1);
+
+			intervalSum = sum + interval;
+			intervalSquareSum = squareSum + (double) interval * interval;
+			missedSum = lostSum + lost;
+			samples = count;
+		}
+
+		public int getSamples() {
+			return samples;
+		}
+
+		/**
+		 * Devuelve la media de los intervalos en nanosegundos. Hasta reunir
+		 * suficientes muestras se supone el periodo nominal de Keepalive.
+		 */
+		public double getMean() {
+			int count = samples;
+			return (count < MIN_SAMPLES) ? KEEP_ALIVE : (double) intervalSum / count;
+		}
+
+		/**
+		 * Devuelve el desvio de los intervalos en nanosegundos, acotado
+		 * inferiormente para evitar falsos positivos en enlaces muy estables.
+		 */
+		public double getStdDeviation() {
+			int count = samples;
+			if (count < MIN_SAMPLES)
+				return KEEP_ALIVE / 2;
+			double mean = (double) intervalSum / count;
+			double variance = intervalSquareSum / count - mean * mean;
+			return Math.max(MIN_STD_DEVIATION, Math.sqrt(Math.max(0, variance)));
+		}
+
+		/**
+		 * Devuelve la proporcion estimada de Keepalive perdidos en la ventana.
+		 */
+		public double getLossRate() {
+			int count = samples;
+			int lost = missedSum;
+			return (count + lost == 0) ? 0 : (double) lost / (count + lost);
 		}
 
 	}
@@ -99,20 +386,11 @@ final class KeepAlive extends EventSourceI<InternalEvent> implements AutoCloseab
 		public void run() {
 			while (running) {
 				try {
-					Thread.sleep(DEAD_NODES_PURGER_PERIOD);
-					long currentTime = System.currentTimeMillis();
-					synchronized (nodes) {
-						for (KeepAliveInfo info : nodes.values()) {
-							// System.out.println(currentTime - info.lastKeepAliveReceived);
-							if (currentTime - info.lastKeepAliveReceived > MAX_ALLOWED_TIME) {
-								++info.tries;
-								if (info.tries >= MAX_TRIES)
-									eventSource.sendEvent(new InternalEvent.KeepAliveError(info.physicalId));
-							} else {
-								info.tries = 0;
-							}
-						}
-					}
+					Thread.sleep(TICK_MS);
+					updateNodes();
+					int[] expired = advance(System.nanoTime());
+					if (expired != null)
+						eventSource.sendEvent(new InternalEvent.KeepAliveError(expired));
 				} catch (InterruptedException e) {
 					running = false;
 				} catch (Exception e) {
@@ -0,0 +1,82 @@
+package terminal;
+
+/**
+ * La clase LinkQuality contiene una copia de las estadisticas del enlace con un
+ * nodo, calculadas a partir de los ultimos intervalos entre sus Keepalive. El
+ * nivel de sospecha phi indica la probabilidad de que el nodo haya fallado: un
+ * valor de 1 equivale a un 10% de error al considerarlo desconectado, 2 a un 1%,
+ * y asi sucesivamente.
+ */
+public final class LinkQuality {
+
+	private final int physicalId;
+	private final int samples;
+	private final double meanInterval;
+	private final double jitter;
+	private final double lossRate;
+	private final double phi;
+	private final boolean suspected;
+
+	LinkQuality(int physicalId, int samples, double meanInterval, double jitter, double lossRate, double phi, boolean suspected) {
+		this.physicalId = physicalId;
+		this.samples = samples;
+		this.meanInterval = meanInterval;
+		this.jitter = jitter;
+		this.lossRate = lossRate;
+		this.phi = phi;
+		this.suspected = suspected;
+	}
+
+	public int getPhysicalId() {
+		return physicalId;
+	}
+
+	/**
+	 * Devuelve la cantidad de intervalos utilizados para calcular las
+	 * estadisticas.
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Devuelve el intervalo promedio entre Keepalive, en milisegundos.
+	 */
+	public double getMeanInterval() {
+		return meanInterval;
+	}
+
+	/**
+	 * Devuelve el desvio de los intervalos entre Keepalive, en milisegundos.
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * Devuelve la proporcion estimada de Keepalive perdidos.
+	 */
+	public double getLossRate() {
+		return lossRate;
+	}
+
+	/**
+	 * Devuelve el nivel de sospecha actual de que el nodo haya fallado.
+	 */
+	public double getPhi() {
+		return phi;
+	}
+
+	/**
+	 * Indica si el nivel de sospecha supera el umbral configurado.
+	 */
+	public boolean isSuspected() {
+		return suspected;
+	}
+
+	@Override
+	public String toString() {
+		return "ID = " + physicalId + " || SAMPLES = " + samples + " || MEAN INTERVAL = " + meanInterval + " || JITTER = " + jitter + " || LOSS RATE = " + lossRate + " || PHI = " + phi;
+	}
+
+}
@@ -1,28 +1,55 @@
 package terminal;
 
+import java.util.ArrayList;
+
 import terminal.Event.InternalEvent;
 import terminal.Event.InternalEvent.CloseSignal;
 import terminal.Event.InternalEvent.ExecutionFinished;
 import terminal.Event.InternalEvent.ExecutionStarted;
 import terminal.Event.InternalEvent.IncomingPacket;
+import terminal.Event.InternalEvent.IncomingTouche;
 import terminal.Event.InternalEvent.InternalEventVisitor;
 import terminal.Event.InternalEvent.KeepAliveError;
+import terminal.Event.InternalEvent.NodeConnected;
+import terminal.Event.InternalEvent.NodeConnectionFailed;
+import terminal.Event.InternalEvent.ScheduledCommands;
+import terminal.Event.InternalEvent.SenderOverflow;
 import terminal.Event.InternalEvent.StepTimeOut;
 
+/**
+ * La clase MainController atiende los eventos internos generados por los
+ * distintos componentes de la Terminal desde un unico thread. Su cola puede ser
+ * ilimitada o de capacidad fija segun la configuracion.
+ */
 final class MainController extends EventListener<InternalEvent> implements AutoCloseable {
 
+	private static final int BATCH_SIZE = 64;
+
 	private final Terminal terminal;
+	private final EventQueue<InternalEvent> eventQueue;
 	private final Thread mainControllerTask;
 
 	private volatile boolean closed;
 
-	public MainController(Terminal terminal) {
+	public MainController(Terminal terminal, TerminalConfiguration configuration) {
+		this(terminal, newEventQueue(configuration));
+	}
+
+	private MainController(Terminal terminal, EventQueue<InternalEvent> eventQueue) {
+		super(eventQueue);
 		this.terminal = terminal;
+		this.eventQueue = eventQueue;
 		this.closed = false;
 		this.mainControllerTask = new Thread(new MainControllerTask(), "MainController");
 		this.mainControllerTask.start();
 	}
 
+	private static EventQueue<InternalEvent> newEventQueue(TerminalConfiguration configuration) {
+		if (configuration.getControllerQueueCapacity() == 0)
+			return new EventQueue.UnboundedEventQueue<>();
+		return new MpscRingBuffer<>(configuration.getControllerQueueCapacity(), configuration.getControllerWaitStrategy());
+	}
+
 	@Override
 	public void close() {
 		if (!closed) {
@@ -38,18 +65,30 @@ final class MainController extends EventListener<InternalEvent> implements AutoC
 
 	private final class MainControllerTask implements Runnable, InternalEventVisitor {
 
+		private final ArrayList<InternalEvent> batch = new ArrayList<>(BATCH_SIZE);
 		private volatile boolean running = true;
 
+		/**
+		 * Espera el proximo evento y retira junto con el todos los pendientes, hasta
+		 * BATCH_SIZE, para atenderlos sin volver a esperar por cada uno.
+		 */
 		@Override
 		public void run() {
 			while (running) {
 				try {
-					InternalEvent event = getEvent();
-					event.accept(this);
+					batch.add(getEvent());
+					drainEvents(batch, BATCH_SIZE - 1);
+					for (int i = 0; i < batch.size() && running; i++) {
+						try {
+							batch.get(i).accept(this);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+					}
 				} catch (InterruptedException e) {
 					running = false;
-				} catch (Exception e) {
-					e.printStackTrace();
+				} finally {
+					batch.clear();
 				}
 			}
 		}
@@ -59,13 +98,25 @@ final class MainController extends EventListener<InternalEvent> implements AutoC
 			terminal.visit(event);
 		}
 
+		@Override
+		public void visit(IncomingTouche event) throws Exception {
+			terminal.visit(event);
+		}
+
 		@Override
 		public void visit(KeepAliveError event) throws Exception {
 			terminal.visit(event);
 		}
 
+		/**
+		 * Al cerrarse la Terminal se espera la finalizacion de los threads que
+		 * depositan eventos en la cola, por lo que antes se cierra la cola de
+		 * capacidad fija para que ninguno de ellos quede esperando lugar.
+		 */
 		@Override
 		public void visit(CloseSignal event) {
+			if (eventQueue instanceof MpscRingBuffer)
+				((MpscRingBuffer<InternalEvent>) eventQueue).close();
 			terminal.visit(event);
 			running = false;
 		}
@@ -84,5 +135,25 @@ final class MainController extends EventListener<InternalEvent> implements AutoC
 		public void visit(StepTimeOut event) throws Exception {
 			terminal.visit(event);
 		}
+
+		@Override
+		public void visit(SenderOverflow event) throws Exception {
+			terminal.visit(event);
+		}
+
+		@Override
+		public void visit(ScheduledCommands event) throws Exception {
+			terminal.visit(event);
+		}
+
+		@Override
+		public void visit(NodeConnected event) throws Exception {
+			terminal.visit(event);
+		}
+
+		@Override
+		public void visit(NodeConnectionFailed event) throws Exception {
+			terminal.visit(event);
+		}
 	}
 }
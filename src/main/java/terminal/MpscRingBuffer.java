@@ -0,0 +1,253 @@
+package terminal;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import terminal.TerminalConfiguration.WaitStrategy;
+
+/**
+ * La clase MpscRingBuffer es una cola de eventos de capacidad fija para
+ * multiples productores y un unico consumidor. Los lugares se preasignan en un
+ * arreglo circular, y cada uno posee un numero de secuencia que indica si se
+ * encuentra libre o publicado, por lo que depositar y retirar un evento no
+ * crea objetos ni toma locks. Cuando la cola esta llena los productores
+ * esperan a que se libere lugar, salvo que el productor sea el propio
+ * consumidor, en cuyo caso el evento se guarda aparte para evitar un bloqueo.
+ * Un productor deja de esperar y descarta su evento si es interrumpido o si la
+ * cola fue cerrada, ya que el consumidor puede estar esperando que el mismo
+ * finalice.
+ */
+final class MpscRingBuffer<T> implements EventQueue<T> {
+
+	private static final int SPIN_TRIES = 256;
+	private static final long PRODUCER_PARK_NANOS = 10000;
+
+	private final Object[] buffer;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+
+	private final AtomicLong tail;
+	private volatile long head;
+
+	/**
+	 * Eventos depositados por el consumidor con la cola llena, junto con la
+	 * secuencia a partir de la cual deben retirarse para respetar el orden con los
+	 * eventos ya publicados en el arreglo. Solo es accedido por el thread
+	 * consumidor.
+	 */
+	private final ArrayDeque<Overflowed<T>> overflow;
+	private volatile Thread consumer;
+	private volatile boolean consumerWaiting;
+	private volatile boolean closed;
+
+	private final AtomicLong droppedEvents;
+	private final AtomicLong producerStalls;
+	private final AtomicLong producerStallNanos;
+	private volatile int maxDepth;
+	private volatile boolean fallenBehind;
+
+	/**
+	 * Crea la cola con la menor potencia de 2 mayor o igual a la capacidad
+	 * indicada.
+	 */
+	public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.buffer = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+		this.mask = size - 1;
+		this.waitStrategy = waitStrategy;
+
+		this.tail = new AtomicLong(0);
+		this.head = 0;
+		this.overflow = new ArrayDeque<>();
+		this.consumerWaiting = false;
+		this.closed = false;
+
+		this.droppedEvents = new AtomicLong(0);
+		this.producerStalls = new AtomicLong(0);
+		this.producerStallNanos = new AtomicLong(0);
+		this.maxDepth = 0;
+		this.fallenBehind = false;
+	}
+
+	@Override
+	public void add(T event) {
+		long stallStart = 0;
+		while (true) {
+			long sequence = tail.get();
+			int index = (int) sequence & mask;
+			long available = sequences.get(index);
+			if (available == sequence) {
+				if (tail.compareAndSet(sequence, sequence + 1)) {
+					buffer[index] = event;
+					sequences.set(index, sequence + 1);
+					break;
+				}
+			} else if (available < sequence) {
+				if (Thread.currentThread() == consumer) {
+					overflow.add(new Overflowed<>(tail.get(), event));
+					return;
+				}
+				if (closed || Thread.currentThread().isInterrupted()) {
+					droppedEvents.incrementAndGet();
+					fallenBehind = true;
+					break;
+				}
+				if (stallStart == 0) {
+					stallStart = System.nanoTime();
+					producerStalls.incrementAndGet();
+					fallenBehind = true;
+				}
+				LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+			}
+		}
+
+		if (stallStart != 0)
+			producerStallNanos.addAndGet(System.nanoTime() - stallStart);
+		if (consumerWaiting)
+			LockSupport.unpark(consumer);
+	}
+
+	/**
+	 * Cierra la cola. A partir de este momento los productores que encuentran la
+	 * cola llena descartan su evento en lugar de esperar, por lo que el consumidor
+	 * puede esperar la finalizacion de sus threads sin riesgo de bloquearse.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		if (consumer == null)
+			consumer = Thread.currentThread();
+
+		return await(false, 0);
+	}
+
+	@Override
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (consumer == null)
+			consumer = Thread.currentThread();
+
+		return await(true, System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	@Override
+	public int drainTo(Collection<? super T> events, int maxEvents) {
+		if (consumer == null)
+			consumer = Thread.currentThread();
+
+		int drained = 0;
+		T event;
+		while (drained < maxEvents && (event = next()) != null) {
+			events.add(event);
+			++drained;
+		}
+		return drained;
+	}
+
+	/**
+	 * Espera segun la estrategia configurada hasta que se publique un evento, o
+	 * hasta el instante indicado si la espera es limitada, en cuyo caso devuelve
+	 * null al vencer el tiempo.
+	 */
+	private T await(boolean timed, long deadline) throws InterruptedException {
+		int tries = 0;
+		T event;
+		while ((event = next()) == null) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			long remaining = deadline - System.nanoTime();
+			if (timed && remaining <= 0)
+				return null;
+
+			if (waitStrategy == WaitStrategy.Yielding) {
+				Thread.yield();
+			} else if (waitStrategy == WaitStrategy.SpinThenPark && tries < SPIN_TRIES) {
+				++tries;
+			} else {
+				consumerWaiting = true;
+				event = next();
+				if (event == null) {
+					if (timed)
+						LockSupport.parkNanos(this, remaining);
+					else
+						LockSupport.park(this);
+				}
+				consumerWaiting = false;
+				if (event != null)
+					return event;
+			}
+		}
+		return event;
+	}
+
+	/**
+	 * Retira el proximo evento sin esperar. Un evento guardado aparte por el
+	 * consumidor se retira recien cuando se retiraron todos los eventos que
+	 * estaban publicados en el arreglo en el momento en que fue depositado.
+	 */
+	private T next() {
+		Overflowed<T> overflowed = overflow.peek();
+		if (overflowed != null && head >= overflowed.sequence) {
+			overflow.poll();
+			return overflowed.event;
+		}
+		return nextPublished();
+	}
+
+	@SuppressWarnings("unchecked")
+	private T nextPublished() {
+		long sequence = head;
+		int index = (int) sequence & mask;
+		if (sequences.get(index) != sequence + 1)
+			return null;
+
+		int depth = (int) (tail.get() - sequence);
+		if (depth > maxDepth)
+			maxDepth = depth;
+
+		T event = (T) buffer[index];
+		buffer[index] = null;
+		sequences.lazySet(index, sequence + buffer.length);
+		head = sequence + 1;
+		return event;
+	}
+
+	@Override
+	public EventQueueStatistics getStatistics() {
+		int depth = (int) Math.max(0, tail.get() - head);
+		return new EventQueueStatistics(buffer.length, depth, maxDepth, droppedEvents.get(), 0, producerStalls.get(), producerStallNanos.get());
+	}
+
+	@Override
+	public boolean hasFallenBehind() {
+		return fallenBehind;
+	}
+
+	@Override
+	public void clearFallenBehind() {
+		fallenBehind = false;
+	}
+
+	private static final class Overflowed<T> {
+
+		private final long sequence;
+		private final T event;
+
+		public Overflowed(long sequence, T event) {
+			this.sequence = sequence;
+			this.event = event;
+		}
+
+	}
+
+}
@@ -1,39 +1,85 @@
 package terminal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.net.SocketException;
-import java.util.TreeSet;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import terminal.Event.InternalEvent;
-import terminal.QSYPacket.PacketType;
 
+/**
+ * La clase MulticastReceiver recibe los QSYHelloPackets enviados por los nodos
+ * al grupo multicast. Los datagramas se leen desde un DatagramChannel no
+ * bloqueante, vaciando todos los disponibles en cada despertar del Selector.
+ * Los paquetes se validan directamente sobre el buffer de lectura, por lo que
+ * solo se construye un QSYPacket para los Hello que son aceptados.
+ */
 final class MulticastReceiver extends EventSourceI<InternalEvent> implements AutoCloseable {
 
+	/**
+	 * Tiempo minimo entre dos Hello aceptados de un mismo nodo. Evita que un nodo
+	 * que se desconecta y vuelve a anunciarse en forma repetida inunde al
+	 * MainController.
+	 */
+	private static final int MIN_HELLO_INTERVAL_MS = 500;
+
+	private static final int RECEIVE_BUFFER_SIZE = 64;
+
 	private final Thread multicastReceiverTask;
 
 	private final EventSource<InternalEvent> eventSource;
-	private final MulticastSocket socket;
-	private final DatagramPacket packet;
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ByteBuffer buffer;
+	private final QSYFrame frame;
+
+	/**
+	 * Conjunto de 65536 bits, indexado por id fisico, de los nodos que ya fueron
+	 * anunciados.
+	 */
+	private final AtomicLongArray nodes;
+	/**
+	 * Instante, en milisegundos desde la creacion, en el que se acepto el ultimo
+	 * Hello de cada nodo. Solo es accedido por el thread del MulticastReceiver.
+	 */
+	private final int[] lastAcceptedHello;
+	private final long startTime;
 
-	private final TreeSet<Integer> nodes;
 	private volatile boolean acceptPackets;
 
 	private volatile boolean closed;
 
-	public MulticastReceiver(InetAddress interfaceAddress, InetAddress multicastAddress, int port) throws SocketException, IOException {
-		this.socket = new MulticastSocket(port);
-		this.socket.joinGroup(new InetSocketAddress(multicastAddress, port), NetworkInterface.getByInetAddress(interfaceAddress));
+	public MulticastReceiver(InetAddress interfaceAddress, InetAddress multicastAddress, int port) throws IOException {
+		this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		try {
+			this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			this.channel.bind(new InetSocketAddress(port));
+			this.channel.join(multicastAddress, NetworkInterface.getByInetAddress(interfaceAddress));
+			this.channel.configureBlocking(false);
+			this.selector = Selector.open();
+			this.channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
 
 		this.eventSource = new EventSource<>();
-		this.packet = new DatagramPacket(new byte[QSYPacket.PACKET_SIZE], QSYPacket.PACKET_SIZE);
+		this.buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+		this.frame = new QSYFrame().wrap(buffer, 0);
 		this.closed = false;
 
-		this.nodes = new TreeSet<>();
+		this.nodes = new AtomicLongArray((QSYPacket.MAX_ID_SIZE + 1) / Long.SIZE);
+		this.lastAcceptedHello = new int[QSYPacket.MAX_ID_SIZE + 1];
+		this.startTime = System.nanoTime();
 		this.acceptPackets = false;
 
 		this.multicastReceiverTask = new Thread(new MulticastReceiverTask(), "MulticastReceiver");
@@ -41,15 +87,16 @@ final class MulticastReceiver extends EventSourceI<InternalEvent> implements Aut
 	}
 
 	public void acceptPackets(boolean acceptPackets) {
-		synchronized (nodes) {
-			this.acceptPackets = acceptPackets;
-		}
+		this.acceptPackets = acceptPackets;
 	}
 
 	public void removeNode(int physicalId) {
-		synchronized (nodes) {
-			nodes.remove(physicalId);
-		}
+		int index = physicalId >>> 6;
+		long mask = 1L << physicalId;
+		long bits;
+		do {
+			bits = nodes.get(index);
+		} while ((bits & mask) != 0 && !nodes.compareAndSet(index, bits, bits & ~mask));
 	}
 
 	@Override
@@ -63,14 +110,61 @@ final class MulticastReceiver extends EventSourceI<InternalEvent> implements Aut
 	}
 
 	@Override
-	public void close() throws InterruptedException {
+	public void close() throws IOException, InterruptedException {
 		if (!closed) {
 			closed = true;
-			socket.close();
 			try {
-				multicastReceiverTask.join();
+				selector.close();
 			} finally {
-				eventSource.close();
+				try {
+					multicastReceiverTask.join();
+				} finally {
+					try {
+						channel.close();
+					} finally {
+						eventSource.close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marca al nodo como anunciado. Devuelve false si el nodo ya se encontraba
+	 * marcado.
+	 */
+	private boolean markNode(int physicalId) {
+		int index = physicalId >>> 6;
+		long mask = 1L << physicalId;
+		long bits;
+		do {
+			bits = nodes.get(index);
+			if ((bits & mask) != 0)
+				return false;
+		} while (!nodes.compareAndSet(index, bits, bits | mask));
+		return true;
+	}
+
+	private void receive() throws IOException {
+		SocketAddress source;
+		buffer.clear();
+		while ((source = channel.receive(buffer)) != null) {
+			int length = buffer.position();
+			buffer.clear();
+			if (!acceptPackets || length < QSYPacket.PACKET_SIZE || !frame.hasValidSignature() || frame.getTypeCode() != QSYFrame.TYPE_HELLO)
+				continue;
+
+			int physicalId = frame.getPhysicalId();
+			if (physicalId == QSYPacket.BROADCAST_ID || (nodes.get(physicalId >>> 6) & (1L << physicalId)) != 0)
+				continue;
+
+			int now = (int) ((System.nanoTime() - startTime) / 1000000) + MIN_HELLO_INTERVAL_MS;
+			if (lastAcceptedHello[physicalId] != 0 && now - lastAcceptedHello[physicalId] < MIN_HELLO_INTERVAL_MS)
+				continue;
+
+			if (markNode(physicalId)) {
+				lastAcceptedHello[physicalId] = now;
+				eventSource.sendEvent(new InternalEvent.IncomingPacket(new QSYPacket(((InetSocketAddress) source).getAddress(), frame)));
 			}
 		}
 	}
@@ -83,22 +177,11 @@ final class MulticastReceiver extends EventSourceI<InternalEvent> implements Aut
 		public void run() {
 			while (running) {
 				try {
-					socket.receive(packet);
-					synchronized (nodes) {
-						if (acceptPackets) {
-							InetAddress sender = packet.getAddress();
-							QSYPacket qsyPacket = new QSYPacket(sender, packet.getData());
-							if (qsyPacket.getType() == PacketType.Hello && !nodes.contains(qsyPacket.getPhysicalId())) {
-								nodes.add(qsyPacket.getPhysicalId());
-								eventSource.sendEvent(new InternalEvent.IncomingPacket(qsyPacket));
-							}
-						}
-					}
-				} catch (SocketException e) {
+					selector.select();
+					selector.selectedKeys().clear();
+					receive();
+				} catch (ClosedSelectorException e) {
 					running = false;
-				} catch (IllegalArgumentException e) {
-					// No se pudo construir el paquete.
-					e.printStackTrace();
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -0,0 +1,64 @@
+package terminal;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * La clase MulticastSender envia comandos dirigidos a todos los nodos con un
+ * unico datagrama hacia el grupo multicast. Solo los nodos que lo anuncian en
+ * su QSYHelloPacket interpretan estos comandos.
+ */
+final class MulticastSender implements AutoCloseable {
+
+	private final DatagramChannel channel;
+	private final InetSocketAddress groupAddress;
+	private final ByteBuffer byteBuffer;
+	private final QSYFrame frame;
+
+	private volatile long datagrams;
+
+	public MulticastSender(InetAddress interfaceAddress, InetAddress multicastAddress, int port) throws IOException {
+		this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		try {
+			this.channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, NetworkInterface.getByInetAddress(interfaceAddress));
+			this.channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.groupAddress = new InetSocketAddress(multicastAddress, port);
+		this.byteBuffer = ByteBuffer.allocateDirect(QSYPacket.PACKET_SIZE);
+		this.frame = new QSYFrame().wrap(byteBuffer, 0);
+		this.datagrams = 0;
+	}
+
+	/**
+	 * Envia el comando de la plantilla a todos los nodos del grupo multicast.
+	 */
+	public synchronized void broadcast(CommandTemplate template, int numberOfStep) throws IOException {
+		try {
+			template.encode(frame, QSYPacket.BROADCAST_ID, numberOfStep);
+			if (channel.send(byteBuffer, groupAddress) != QSYPacket.PACKET_SIZE)
+				throw new IOException("El comando hacia el grupo multicast no se pudo enviar correctamente");
+			++datagrams;
+		} finally {
+			byteBuffer.clear();
+		}
+	}
+
+	public long getDatagrams() {
+		return datagrams;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
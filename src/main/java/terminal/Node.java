@@ -2,29 +2,40 @@ package terminal;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
 
 class Node implements AutoCloseable {
 
+	private final QSYPacket helloPacket;
 	private final int physicalId;
 	private final InetAddress nodeAddress;
 	private final SocketChannel nodeSocketChannel;
+	private final boolean supportsMulticastCommands;
 
-	public Node(QSYPacket qsyPacket) throws IOException, IllegalArgumentException {
+	/**
+	 * Crea un nodo a partir de su QSYHelloPacket y de la conexion ya establecida
+	 * por el Connector.
+	 */
+	public Node(QSYPacket qsyPacket, SocketChannel nodeSocketChannel) throws IllegalArgumentException {
 		if (qsyPacket.getType() == QSYPacket.PacketType.Hello) {
-			InetSocketAddress hostAddress = new InetSocketAddress(qsyPacket.getNodeAddress().getHostAddress(), QSYPacket.TCP_PORT);
-			SocketChannel nodeSocketChannel = SocketChannel.open(hostAddress);
-			nodeSocketChannel.socket().setTcpNoDelay(true);
-			nodeSocketChannel.configureBlocking(false);
+			this.helloPacket = qsyPacket;
 			this.physicalId = qsyPacket.getPhysicalId();
 			this.nodeAddress = qsyPacket.getNodeAddress();
 			this.nodeSocketChannel = nodeSocketChannel;
+			this.supportsMulticastCommands = qsyPacket.supportsMulticastCommands();
 		} else {
 			throw new IllegalArgumentException("El QSYPacket recibido no es un QSYHelloPacket.");
 		}
 	}
 
+	/**
+	 * Devuelve el QSYHelloPacket a partir del cual se creo el nodo, utilizado para
+	 * reconectarlo.
+	 */
+	public QSYPacket getHelloPacket() {
+		return helloPacket;
+	}
+
 	public int getPhysicalId() {
 		return physicalId;
 	}
@@ -37,6 +48,10 @@ class Node implements AutoCloseable {
 		return nodeSocketChannel;
 	}
 
+	public boolean supportsMulticastCommands() {
+		return supportsMulticastCommands;
+	}
+
 	@Override
 	public void close() throws IOException {
 		nodeSocketChannel.close();
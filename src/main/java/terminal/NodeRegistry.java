@@ -0,0 +1,226 @@
+package terminal;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import terminal.QSYPacket.PacketType;
+
+/**
+ * La clase NodeRegistry mantiene en disco los nodos conocidos, para poder
+ * reconectarse a los mismos al iniciar la Terminal sin esperar sus
+ * QSYHelloPackets. El archivo es un registro binario al que solo se agregan
+ * entradas de longitud fija: id fisico, direccion IPv4, flags del Hello,
+ * operacion y checksum. Las entradas corruptas o incompletas se ignoran, y el
+ * archivo se compacta al abrirse en caso de contener demasiadas entradas
+ * obsoletas o una entrada final incompleta, para que las nuevas entradas
+ * queden alineadas. Un nodo al que no fue posible conectarse se conserva hasta
+ * acumular MAX_FAILED_CONNECTS intentos fallidos consecutivos. No es ThreadSafe.
+ */
+final class NodeRegistry implements AutoCloseable {
+
+	private static final int RECORD_SIZE = 12;
+	private static final int CHECKSUM_INDEX = 8;
+	private static final byte OP_ADD = 1;
+	private static final byte OP_REMOVE = 2;
+	private static final byte OP_FAILED = 3;
+	private static final int MAX_FAILED_CONNECTS = 5;
+
+	private final Path path;
+	private final TreeMap<Integer, KnownNode> nodes;
+	private final ByteBuffer record;
+	private final CRC32 checksum;
+	private FileChannel channel;
+
+	public NodeRegistry(String path) throws IOException {
+		this.path = Paths.get(path);
+		this.nodes = new TreeMap<>();
+		this.record = ByteBuffer.allocate(RECORD_SIZE);
+		this.checksum = new CRC32();
+
+		int records = load();
+		if (records > 2 * nodes.size() + 16 || (Files.exists(this.path) && Files.size(this.path) % RECORD_SIZE != 0))
+			compact();
+		this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Devuelve un QSYHelloPacket por cada nodo conocido, reconstruido a partir de
+	 * su entrada en el registro.
+	 */
+	public List<QSYPacket> getKnownNodes() {
+		ArrayList<QSYPacket> helloPackets = new ArrayList<>(nodes.size());
+		QSYFrame frame = new QSYFrame();
+		for (KnownNode node : nodes.values()) {
+			frame.wrap(ByteBuffer.allocate(QSYPacket.PACKET_SIZE), 0).putHeader(PacketType.Hello).putPhysicalId(node.physicalId).putFlags(node.flags);
+			helloPackets.add(new QSYPacket(node.address, frame));
+		}
+		return helloPackets;
+	}
+
+	/**
+	 * Registra el nodo conectado. Solo se escribe una entrada en caso de que el
+	 * nodo no se encontrara registrado con la misma direccion.
+	 */
+	public void add(int physicalId, InetAddress address, int flags) {
+		if (!(address instanceof Inet4Address))
+			return;
+
+		KnownNode node = nodes.get(physicalId);
+		if (node != null && node.address.equals(address) && node.flags == flags && node.failedConnects == 0)
+			return;
+
+		nodes.put(physicalId, new KnownNode(physicalId, address, flags));
+		append(physicalId, address.getAddress(), flags, OP_ADD);
+	}
+
+	/**
+	 * Registra que no fue posible conectarse al nodo. El nodo se elimina del
+	 * registro recien al acumular MAX_FAILED_CONNECTS intentos fallidos sin haberse
+	 * conectado entre ellos.
+	 */
+	public void connectionFailed(int physicalId) {
+		KnownNode node = nodes.get(physicalId);
+		if (node == null)
+			return;
+
+		if (node.failedConnects + 1 >= MAX_FAILED_CONNECTS) {
+			remove(physicalId);
+		} else {
+			++node.failedConnects;
+			append(physicalId, node.address.getAddress(), node.flags, OP_FAILED);
+		}
+	}
+
+	public void remove(int physicalId) {
+		KnownNode node = nodes.remove(physicalId);
+		if (node != null)
+			append(physicalId, node.address.getAddress(), node.flags, OP_REMOVE);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Agrega una entrada al final del registro. Un error de escritura solo
+	 * provoca que el registro quede desactualizado, por lo que no se propaga.
+	 */
+	private void append(int physicalId, byte[] address, int flags, byte op) {
+		record.clear();
+		encode(record, physicalId, address, flags, op);
+		record.flip();
+		try {
+			while (record.hasRemaining())
+				channel.write(record);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void encode(ByteBuffer buffer, int physicalId, byte[] address, int flags, byte op) {
+		int start = buffer.position();
+		buffer.putShort((short) physicalId);
+		buffer.put(address);
+		buffer.put((byte) flags);
+		buffer.put(op);
+		checksum.reset();
+		for (int i = start; i < start + CHECKSUM_INDEX; i++)
+			checksum.update(buffer.get(i));
+		buffer.putInt((int) checksum.getValue());
+	}
+
+	/**
+	 * Lee el registro y aplica sus entradas validas. Devuelve la cantidad de
+	 * entradas leidas.
+	 */
+	private int load() throws IOException {
+		if (!Files.exists(path))
+			return 0;
+
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		byte[] address = new byte[4];
+		int records = 0;
+		while (buffer.remaining() >= RECORD_SIZE) {
+			int start = buffer.position();
+			checksum.reset();
+			for (int i = start; i < start + CHECKSUM_INDEX; i++)
+				checksum.update(buffer.get(i));
+			int physicalId = buffer.getShort() & 0xFFFF;
+			buffer.get(address);
+			int flags = buffer.get() & 0xFF;
+			byte op = buffer.get();
+			if (buffer.getInt() != (int) checksum.getValue())
+				continue;
+
+			++records;
+			if (op == OP_ADD) {
+				nodes.put(physicalId, new KnownNode(physicalId, InetAddress.getByAddress(address), flags));
+			} else if (op == OP_REMOVE) {
+				nodes.remove(physicalId);
+			} else if (op == OP_FAILED) {
+				KnownNode node = nodes.get(physicalId);
+				if (node != null)
+					++node.failedConnects;
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Reescribe el registro con una unica entrada por cada nodo conocido, seguida
+	 * de una entrada por cada intento fallido de conexion pendiente.
+	 */
+	private void compact() throws IOException {
+		int records = 0;
+		for (KnownNode node : nodes.values())
+			records += 1 + node.failedConnects;
+		ByteBuffer buffer = ByteBuffer.allocate(records * RECORD_SIZE);
+		for (KnownNode node : nodes.values()) {
+			encode(buffer, node.physicalId, node.address.getAddress(), node.flags, OP_ADD);
+			for (int i = 0; i < node.failedConnects; i++)
+				encode(buffer, node.physicalId, node.address.getAddress(), node.flags, OP_FAILED);
+		}
+		buffer.flip();
+
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				output.write(buffer);
+			output.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static final class KnownNode {
+
+		private final int physicalId;
+		private final InetAddress address;
+		private final int flags;
+		private int failedConnects;
+
+		public KnownNode(int physicalId, InetAddress address, int flags) {
+			this.physicalId = physicalId;
+			this.address = address;
+			this.flags = flags;
+			this.failedConnects = 0;
+		}
+
+	}
+
+}
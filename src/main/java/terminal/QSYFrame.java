@@ -0,0 +1,168 @@
+package terminal;
+
+import java.nio.ByteBuffer;
+
+import terminal.Color.ColorFactory;
+import terminal.QSYPacket.PacketType;
+
+/**
+ * La clase QSYFrame es un flyweight que permite leer y escribir los campos de
+ * una trama QSY directamente sobre un ByteBuffer, sin realizar copias ni crear
+ * objetos intermedios. Una misma instancia puede reutilizarse para multiples
+ * tramas invocando nuevamente a wrap. No es ThreadSafe.
+ */
+final class QSYFrame {
+
+	static final byte Q_INDEX = 0x00;
+	static final byte S_INDEX = 0x01;
+	static final byte Y_INDEX = 0x02;
+	static final byte TYPE_INDEX = 0x03;
+	static final byte ID_INDEX = 0x04;
+	static final byte COLOR_RG_INDEX = 0x06;
+	static final byte COLOR_B_INDEX = 0x07;
+	static final byte DELAY_INDEX = 0x08;
+	static final byte STEP_INDEX = 0x0C;
+	static final byte FLAGS_INDEX = 0x0E;
+
+	/**
+	 * Indica, en el byte FLAGS_INDEX de un QSYHelloPacket, que el nodo acepta
+	 * comandos enviados al grupo multicast con el id QSYPacket.BROADCAST_ID. El
+	 * firmware que no implementa esta extension envia el byte en cero, por lo que
+	 * dichos nodos reciben los comandos por TCP.
+	 */
+	static final int FLAG_MULTICAST_COMMANDS = 0x01;
+
+	static final byte TYPE_HELLO = 0x00;
+	static final byte TYPE_COMMAND = 0x01;
+	static final byte TYPE_TOUCHE = 0x02;
+	static final byte TYPE_KEEPALIVE = 0x03;
+
+	private static final PacketType[] PACKET_TYPES = { PacketType.Hello, PacketType.Command, PacketType.Touche, PacketType.Keepalive };
+
+	private ByteBuffer buffer;
+	private int offset;
+
+	public QSYFrame() {
+	}
+
+	/**
+	 * Posiciona el flyweight sobre la trama que comienza en la posicion absoluta
+	 * offset del buffer. No modifica la posicion ni el limite del mismo.
+	 */
+	public QSYFrame wrap(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+		return this;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public boolean hasValidSignature() {
+		return buffer.get(offset + Q_INDEX) == 'Q' && buffer.get(offset + S_INDEX) == 'S' && buffer.get(offset + Y_INDEX) == 'Y';
+	}
+
+	public int getTypeCode() {
+		return buffer.get(offset + TYPE_INDEX) & 0xFF;
+	}
+
+	public boolean hasValidType() {
+		return getTypeCode() < PACKET_TYPES.length;
+	}
+
+	public PacketType getType() throws IllegalArgumentException {
+		int type = getTypeCode();
+		if (type >= PACKET_TYPES.length)
+			throw new IllegalArgumentException("El QSYPacket posee un type invalido.");
+		return PACKET_TYPES[type];
+	}
+
+	public int getPhysicalId() {
+		return getUnsignedShort(ID_INDEX);
+	}
+
+	public byte getRed() {
+		return (byte) ((buffer.get(offset + COLOR_RG_INDEX) >> 4) & 0x0F);
+	}
+
+	public byte getGreen() {
+		return (byte) (buffer.get(offset + COLOR_RG_INDEX) & 0x0F);
+	}
+
+	public byte getBlue() {
+		return (byte) ((buffer.get(offset + COLOR_B_INDEX) >> 4) & 0x0F);
+	}
+
+	public Color getColor() {
+		return ColorFactory.createColor(getRed(), getGreen(), getBlue());
+	}
+
+	public long getDelay() {
+		return ((long) getUnsignedShort(DELAY_INDEX) << 16) | getUnsignedShort(DELAY_INDEX + 2);
+	}
+
+	public int getNumberOfStep() {
+		return getUnsignedShort(STEP_INDEX);
+	}
+
+	public int getFlags() {
+		return buffer.get(offset + FLAGS_INDEX) & 0xFF;
+	}
+
+	/**
+	 * Escribe la firma y el tipo de la trama, y limpia el resto de los bytes de la
+	 * misma.
+	 */
+	public QSYFrame putHeader(PacketType type) {
+		for (int i = 0; i < QSYPacket.PACKET_SIZE; i++)
+			buffer.put(offset + i, (byte) 0);
+		buffer.put(offset + Q_INDEX, (byte) 'Q');
+		buffer.put(offset + S_INDEX, (byte) 'S');
+		buffer.put(offset + Y_INDEX, (byte) 'Y');
+		// El orden de PacketType coincide con los codigos del protocolo.
+		buffer.put(offset + TYPE_INDEX, (byte) type.ordinal());
+		return this;
+	}
+
+	public QSYFrame putPhysicalId(int physicalId) {
+		putUnsignedShort(ID_INDEX, physicalId);
+		return this;
+	}
+
+	public QSYFrame putColor(Color color) {
+		buffer.put(offset + COLOR_RG_INDEX, (byte) (((color.getRed() & 0x0F) << 4) | (color.getGreen() & 0x0F)));
+		buffer.put(offset + COLOR_B_INDEX, (byte) ((color.getBlue() & 0x0F) << 4));
+		return this;
+	}
+
+	public QSYFrame putDelay(long delay) {
+		putUnsignedShort(DELAY_INDEX, (int) (delay >>> 16));
+		putUnsignedShort(DELAY_INDEX + 2, (int) delay);
+		return this;
+	}
+
+	public QSYFrame putNumberOfStep(int numberOfStep) {
+		putUnsignedShort(STEP_INDEX, numberOfStep);
+		return this;
+	}
+
+	public QSYFrame putFlags(int flags) {
+		buffer.put(offset + FLAGS_INDEX, (byte) flags);
+		return this;
+	}
+
+	private int getUnsignedShort(int index) {
+		return ((buffer.get(offset + index) & 0xFF) << 8) | (buffer.get(offset + index + 1) & 0xFF);
+	}
+
+	private void putUnsignedShort(int index, int value) {
+		buffer.put(offset + index, (byte) (value >>> 8));
+		buffer.put(offset + index + 1, (byte) value);
+	}
+
+}
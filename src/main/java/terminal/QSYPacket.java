@@ -1,9 +1,7 @@
 package terminal;
 
 import java.net.InetAddress;
-import java.util.Arrays;
-
-import terminal.Color.ColorFactory;
+import java.nio.ByteBuffer;
 
 public final class QSYPacket {
 
@@ -18,23 +16,17 @@ public final class QSYPacket {
 
 	public static final int MIN_ID_SIZE = 0;
 	public static final int MAX_ID_SIZE = (int) (Math.pow(2, 16) - 1);
-	private static final long MIN_DELAY_SIZE = 0;
-	private static final long MAX_DELAY_SIZE = (long) (Math.pow(2, 32) - 1);
-
-	private static final byte Q_INDEX = 0x00;
-	private static final byte S_INDEX = 0x01;
-	private static final byte Y_INDEX = 0x02;
-	private static final byte TYPE_INDEX = 0x03;
-	private static final byte ID_INDEX = 0x04;
-	private static final byte COLOR_RG_INDEX = 0x06;
-	private static final byte COLOR_B_INDEX = 0x07;
-	private static final byte DELAY_INDEX = 0x08;
-	private static final byte STEP_INDEX = 0x0C;
-
-	private static final byte TYPE_HELLO = 0x00;
-	private static final byte TYPE_COMMAND = 0x01;
-	private static final byte TYPE_TOUCHE = 0x02;
-	private static final byte TYPE_KEEPALIVE = 0x03;
+
+	/**
+	 * El id reservado para los comandos dirigidos a todos los nodos a traves del
+	 * grupo multicast. Forma parte del contrato con el firmware de los nodos: un
+	 * nodo que anuncia FLAG_MULTICAST_COMMANDS en su QSYHelloPacket ejecuta los
+	 * comandos recibidos en el grupo con este id como si estuvieran dirigidos a
+	 * el. Por lo tanto ningun nodo puede utilizarlo como id fisico.
+	 */
+	public static final int BROADCAST_ID = MAX_ID_SIZE;
+	static final long MIN_DELAY_SIZE = 0;
+	static final long MAX_DELAY_SIZE = (long) (Math.pow(2, 32) - 1);
 
 	public static enum PacketType {
 		Hello, Command, Touche, Keepalive
@@ -46,100 +38,54 @@ public final class QSYPacket {
 	private final Color color;
 	private final long delay;
 	private final int numberOfStep;
-	private final byte[] rawData;
+	private final int flags;
+	private volatile byte[] rawData;
 
 	private QSYPacket(InetAddress nodeAddress, PacketType type, int id, Color color, long delay, int numberOfStep) throws IllegalArgumentException {
-		this.rawData = new byte[PACKET_SIZE];
-		rawData[Q_INDEX] = 'Q';
-		rawData[S_INDEX] = 'S';
-		rawData[Y_INDEX] = 'Y';
 		this.nodeAddress = nodeAddress;
+		this.packetType = type;
 		this.id = id;
-		setDataIntoArray(id, (byte) 16, rawData, ID_INDEX);
 		this.color = color;
-		setDataIntoArray(getIntFromColor(color), (byte) 16, rawData, COLOR_RG_INDEX);
 		this.delay = delay;
-		setDataIntoArray(delay, (byte) 32, rawData, DELAY_INDEX);
-		this.packetType = type;
-		setDataIntoArray(getShortFromPacketType(packetType), (byte) 8, rawData, TYPE_INDEX);
 		this.numberOfStep = numberOfStep;
-		setDataIntoArray(numberOfStep, (byte) 16, rawData, STEP_INDEX);
+		this.flags = 0;
+		this.rawData = encode();
 	}
 
 	public QSYPacket(InetAddress nodeAddress, byte[] data) throws IllegalArgumentException {
+		this(nodeAddress, new QSYFrame().wrap(ByteBuffer.wrap(checkLength(data)), 0));
+	}
+
+	/**
+	 * Construye el paquete a partir de una trama ya posicionada. Los campos se
+	 * decodifican directamente desde el buffer de la misma, sin copiarlo.
+	 */
+	QSYPacket(InetAddress nodeAddress, QSYFrame frame) throws IllegalArgumentException {
 		if (nodeAddress == null)
 			throw new IllegalArgumentException("La direccion del nodo debe ser valida");
-		else if (data.length != PACKET_SIZE)
-			throw new IllegalArgumentException("La longitud del QSYPacket debe ser de " + PACKET_SIZE + ".");
-		else if (data[Q_INDEX] != 'Q' || data[S_INDEX] != 'S' || data[Y_INDEX] != 'Y')
+		else if (!frame.hasValidSignature())
 			throw new IllegalArgumentException("El QSYPacket posee una firma invalida.");
 
 		this.nodeAddress = nodeAddress;
-		this.packetType = getPacketTypeFromShort(((short) convertBytesToLong(data, TYPE_INDEX, TYPE_INDEX)));
-		this.id = (int) convertBytesToLong(data, ID_INDEX, (byte) (ID_INDEX + 1));
-		this.color = getColorFromInt(data);
-		this.delay = (long) convertBytesToLong(data, DELAY_INDEX, (byte) (DELAY_INDEX + 3));
-		this.numberOfStep = (int) convertBytesToLong(data, STEP_INDEX, (byte) (STEP_INDEX + 1));
-		this.rawData = Arrays.copyOf(data, PACKET_SIZE);
+		this.packetType = frame.getType();
+		this.id = frame.getPhysicalId();
+		this.color = frame.getColor();
+		this.delay = frame.getDelay();
+		this.numberOfStep = frame.getNumberOfStep();
+		this.flags = frame.getFlags();
+		this.rawData = null;
 	}
 
-	private static Color getColorFromInt(byte[] data) {
-		byte red = (byte) convertBytesToLong(new byte[] { (byte) ((data[COLOR_RG_INDEX] >> 4) & 0x0F) }, (byte) 0, (byte) 0);
-		byte green = (byte) convertBytesToLong(new byte[] { (byte) ((data[COLOR_RG_INDEX]) & 0x0F) }, (byte) 0, (byte) 0);
-		byte blue = (byte) convertBytesToLong(new byte[] { (byte) ((data[COLOR_B_INDEX] >> 4) & 0x0F) }, (byte) 0, (byte) 0);
-		return ColorFactory.createColor(red, green, blue);
-	}
-
-	private static int getIntFromColor(Color color) {
-		return (int) (color.getRed() * Math.pow(2, 12) + color.getGreen() * Math.pow(2, 8) + color.getBlue() * Math.pow(2, 4));
+	private static byte[] checkLength(byte[] data) throws IllegalArgumentException {
+		if (data.length != PACKET_SIZE)
+			throw new IllegalArgumentException("La longitud del QSYPacket debe ser de " + PACKET_SIZE + ".");
+		return data;
 	}
 
-	private static PacketType getPacketTypeFromShort(short type) throws IllegalArgumentException {
-		PacketType packetType;
-		switch (type) {
-		case TYPE_HELLO:
-			packetType = PacketType.Hello;
-			break;
-		case TYPE_COMMAND:
-			packetType = PacketType.Command;
-			break;
-		case TYPE_TOUCHE:
-			packetType = PacketType.Touche;
-			break;
-		case TYPE_KEEPALIVE:
-			packetType = PacketType.Keepalive;
-			break;
-		default:
-			throw new IllegalArgumentException("El QSYPacket posee un type invalido.");
-		}
-
-		return packetType;
-	}
-
-	private static short getShortFromPacketType(PacketType packetType) throws IllegalArgumentException {
-		short type;
-		switch (packetType) {
-		case Hello: {
-			type = TYPE_HELLO;
-			break;
-		}
-		case Command: {
-			type = TYPE_COMMAND;
-			break;
-		}
-		case Keepalive: {
-			type = TYPE_KEEPALIVE;
-			break;
-		}
-		case Touche: {
-			type = TYPE_TOUCHE;
-			break;
-		}
-		default: {
-			throw new IllegalArgumentException("El QSYPacket posee un type invalido.");
-		}
-		}
-		return type;
+	private byte[] encode() {
+		byte[] data = new byte[PACKET_SIZE];
+		new QSYFrame().wrap(ByteBuffer.wrap(data), 0).putHeader(packetType).putPhysicalId(id).putColor(color).putDelay(delay).putNumberOfStep(numberOfStep).putFlags(flags);
+		return data;
 	}
 
 	public InetAddress getNodeAddress() {
@@ -166,37 +112,28 @@ public final class QSYPacket {
 		return numberOfStep;
 	}
 
-	public byte[] getRawData() {
-		return rawData;
+	int getFlags() {
+		return flags;
 	}
 
-	private static long convertBytesToLong(byte[] data, byte firstIndex, byte lastIndex) {
-		long value = 0;
-
-		long mul = 1;
-		for (byte i = lastIndex; i >= firstIndex; i--) {
-			long b = data[i];
-			for (byte j = 0; j < 8; j++) {
-				value += mul * (0x1 & b);
-				b >>>= 1;
-				mul <<= 1;
-			}
-		}
-
-		return value;
+	/**
+	 * Indica si el nodo que envio el QSYHelloPacket acepta comandos enviados al
+	 * grupo multicast.
+	 */
+	boolean supportsMulticastCommands() {
+		return (flags & QSYFrame.FLAG_MULTICAST_COMMANDS) != 0;
 	}
 
-	private static void setDataIntoArray(long value, byte bits, byte[] data, int firstIndex) {
-		long val = value;
-
-		long mul = 1;
-		for (byte i = (byte) (bits - 1); i >= 0; i--) {
-			data[i / 8 + firstIndex] += mul * (val % 2);
-			mul <<= 1;
-			if (mul == 256)
-				mul = 1;
-			val >>= 1;
-		}
+	/**
+	 * Devuelve la trama del paquete. En los paquetes recibidos la misma se
+	 * reconstruye a partir de los campos decodificados la primera vez que se
+	 * solicita.
+	 */
+	public byte[] getRawData() {
+		byte[] data = rawData;
+		if (data == null)
+			rawData = data = encode();
+		return data;
 	}
 
 	@Override
@@ -237,6 +174,8 @@ public final class QSYPacket {
 
 		if (physicalId < MIN_ID_SIZE || physicalId > MAX_ID_SIZE)
 			throw new IllegalArgumentException("El id debe estar entre [" + MIN_ID_SIZE + " ; " + MAX_ID_SIZE + "]");
+		else if (physicalId == BROADCAST_ID)
+			throw new IllegalArgumentException("El id " + BROADCAST_ID + " esta reservado para los comandos dirigidos a todos los nodos.");
 		else if (color == null)
 			throw new IllegalArgumentException("El QSYPacket no posee el color correspondiente.");
 		else if (delay < MIN_DELAY_SIZE || delay > MAX_DELAY_SIZE)
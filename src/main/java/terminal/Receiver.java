@@ -6,45 +6,113 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import terminal.Event.InternalEvent;
-import terminal.QSYPacket.PacketType;
-
+import terminal.ReceiverStatistics.ReactorStatistics;
+
+/**
+ * La clase Receiver recibe los paquetes enviados por los nodos. Las conexiones
+ * se reparten entre varios reactores, cada uno con su propio thread manejado
+ * por un Selector. Cada conexion nueva se asigna al reactor que menos
+ * conexiones atiende en ese momento. Los Keepalive recibidos se registran
+ * directamente en el KeepAlive, por lo que solo los Touche generan eventos.
+ * Los Touche tambien se publican en los TouchStreams registrados.
+ */
 final class Receiver extends EventSourceI<InternalEvent> implements AutoCloseable {
 
-	private final EventSource<InternalEvent> eventSource;
-	private final Selector selector;
-	private final LinkedBlockingQueue<ReceiverCommand> pendingTasks;
-	private final TreeMap<Integer, ByteBuffer> buffers;
-	private final byte[] data;
+	private static final int READ_BUFFER_SIZE = 64 * QSYPacket.PACKET_SIZE;
 
-	private final Thread receiverTask;
+	private final EventSource<InternalEvent> eventSource;
+	private final KeepAlive keepAlive;
+	private final Reactor[] reactors;
+	private final ConcurrentHashMap<Integer, Reactor> assignments;
+	private volatile TouchStream[] touchStreams;
 
 	private volatile boolean closed;
 
-	public Receiver() throws IOException {
-		this.selector = Selector.open();
+	public Receiver(int numberOfReactors, KeepAlive keepAlive) throws IOException {
 		this.eventSource = new EventSource<>();
-		this.pendingTasks = new LinkedBlockingQueue<>();
-		this.buffers = new TreeMap<>();
-		this.data = new byte[QSYPacket.PACKET_SIZE];
-
+		this.keepAlive = keepAlive;
+		this.assignments = new ConcurrentHashMap<>();
+		this.touchStreams = new TouchStream[0];
 		this.closed = false;
 
-		this.receiverTask = new Thread(new ReceiverTask(), "Receiver");
-		this.receiverTask.start();
+		this.reactors = new Reactor[numberOfReactors];
+		try {
+			for (int i = 0; i < numberOfReactors; i++)
+				reactors[i] = new Reactor((numberOfReactors == 1) ? "Receiver" : "Receiver-" + i);
+		} catch (IOException e) {
+			for (Reactor reactor : reactors) {
+				try {
+					if (reactor != null)
+						reactor.close();
+				} catch (Exception ex) {
+					ex.printStackTrace();
+				}
+			}
+			throw e;
+		}
+	}
+
+	public synchronized void newNode(int physicalId, SocketChannel socket) {
+		if (assignments.containsKey(physicalId))
+			return;
+
+		Reactor reactor = reactors[0];
+		for (int i = 1; i < reactors.length; i++)
+			if (reactors[i].load < reactor.load)
+				reactor = reactors[i];
+		++reactor.load;
+		assignments.put(physicalId, reactor);
+		reactor.addTask(new NewNodeTask(physicalId, socket));
+	}
+
+	public synchronized void removeNode(int physicalId, SocketChannel socket) {
+		Reactor reactor = assignments.remove(physicalId);
+		if (reactor != null) {
+			--reactor.load;
+			reactor.addTask(new RemoveNodeTask(physicalId, socket));
+		}
+	}
+
+	public synchronized void addTouchStream(TouchStream touchStream) {
+		TouchStream[] current = touchStreams;
+		TouchStream[] streams = Arrays.copyOf(current, current.length + 1);
+		streams[current.length] = touchStream;
+		touchStreams = streams;
 	}
 
-	public void newNode(int physicalId, SocketChannel socket) {
-		pendingTasks.add(new NewNodeTask(physicalId, socket));
-		selector.wakeup();
+	public synchronized void removeTouchStream(TouchStream touchStream) {
+		TouchStream[] current = touchStreams;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == touchStream) {
+				TouchStream[] streams = new TouchStream[current.length - 1];
+				System.arraycopy(current, 0, streams, 0, i);
+				System.arraycopy(current, i + 1, streams, i, current.length - i - 1);
+				touchStreams = streams;
+				return;
+			}
+		}
 	}
 
-	public void removeNode(int physicalId, SocketChannel socket) {
-		pendingTasks.add(new RemoveNodeTask(physicalId, socket));
-		selector.wakeup();
+	/**
+	 * Devuelve una copia de los contadores acumulados hasta el momento por cada
+	 * reactor, junto con los datos de su ultima iteracion y la cantidad de
+	 * resincronizaciones de cada nodo.
+	 */
+	public ReceiverStatistics getStatistics() {
+		ArrayList<ReactorStatistics> statistics = new ArrayList<>(reactors.length);
+		TreeMap<Integer, Long> resyncsByNode = new TreeMap<>();
+		for (Reactor reactor : reactors)
+			statistics.add(reactor.getStatistics(resyncsByNode));
+		return new ReceiverStatistics(statistics, resyncsByNode);
 	}
 
 	@Override
@@ -61,73 +129,220 @@ final class Receiver extends EventSourceI<InternalEvent> implements AutoCloseabl
 	public void close() throws IOException, InterruptedException {
 		if (!closed) {
 			closed = true;
+			try {
+				for (Reactor reactor : reactors)
+					reactor.close();
+			} finally {
+				assignments.clear();
+				eventSource.close();
+			}
+		}
+	}
+
+	/**
+	 * Cada reactor atiende a un subconjunto de las conexiones desde su propio
+	 * thread. Las tareas se depositan en una cola concurrente y se despierta al
+	 * Selector solo si el mismo no fue despertado previamente.
+	 */
+	private final class Reactor implements Runnable {
+
+		private final String name;
+		private final ConcurrentLinkedQueue<ReceiverCommand> pendingTasks;
+		private final AtomicBoolean wakenUp;
+		private final Selector selector;
+
+		private final ConcurrentHashMap<Integer, Connection> connections;
+
+		/**
+		 * Cantidad de conexiones asignadas, utilizada para balancear la carga. Solo se
+		 * modifica bajo el lock del Receiver.
+		 */
+		private volatile int load;
+
+		private volatile long loops;
+		private volatile long keysReady;
+		private volatile long framesDecoded;
+		private volatile long loopNanos;
+		private volatile long maxLoopNanos;
+		private volatile int lastKeysReady;
+		private volatile int lastFramesDecoded;
+		private volatile long lastLoopNanos;
+
+		private final Thread reactorTask;
+
+		private volatile boolean running;
+
+		public Reactor(String name) throws IOException {
+			this.name = name;
+			this.pendingTasks = new ConcurrentLinkedQueue<>();
+			this.wakenUp = new AtomicBoolean(false);
+			this.selector = Selector.open();
+
+			this.connections = new ConcurrentHashMap<>();
+			this.load = 0;
+
+			this.running = true;
+			this.reactorTask = new Thread(this, name);
+			this.reactorTask.start();
+		}
+
+		public void addTask(ReceiverCommand command) {
+			pendingTasks.add(command);
+			if (wakenUp.compareAndSet(false, true))
+				selector.wakeup();
+		}
+
+		public ReactorStatistics getStatistics(Map<Integer, Long> resyncsByNode) {
+			long resyncs = 0;
+			long skippedBytes = 0;
+			for (Connection connection : connections.values()) {
+				resyncs += connection.decoder.getResyncs();
+				skippedBytes += connection.decoder.getSkippedBytes();
+				resyncsByNode.put(connection.physicalId, connection.decoder.getResyncs());
+			}
+			return new ReactorStatistics(name, load, loops, keysReady, framesDecoded, loopNanos, maxLoopNanos, lastKeysReady, lastFramesDecoded, lastLoopNanos, resyncs, skippedBytes);
+		}
+
+		public void close() throws IOException, InterruptedException {
 			try {
 				selector.close();
 			} finally {
 				try {
-					receiverTask.join();
+					reactorTask.join();
 				} finally {
 					pendingTasks.clear();
-					buffers.clear();
-					eventSource.close();
+					connections.clear();
 				}
 			}
 		}
-	}
-
-	private final class ReceiverTask implements Runnable {
-
-		private volatile boolean running = true;
 
 		@Override
 		public void run() {
 			while (running) {
 				try {
+					int ready = selector.select();
+					long start = System.nanoTime();
+					wakenUp.set(false);
+
 					ReceiverCommand task;
 					while ((task = pendingTasks.poll()) != null)
-						task.execute();
+						task.execute(this);
 
-					selector.select();
+					int decoded = 0;
 					for (SelectionKey key : selector.selectedKeys()) {
-						if (key.isReadable()) {
+						if (key.isValid() && key.isReadable()) {
+							Connection connection = (Connection) key.attachment();
 							SocketChannel channel = (SocketChannel) key.channel();
-							int physicalId = (int) key.attachment();
-							if (buffers.containsKey(physicalId)) {
-								ByteBuffer byteBuffer = buffers.get(physicalId);
-
-								channel.read(byteBuffer);
-								if (byteBuffer.remaining() == 0) {
-									byteBuffer.flip();
-									byteBuffer.get(data);
-									byteBuffer.clear();
-									QSYPacket packet = new QSYPacket(channel.socket().getInetAddress(), data);
-									if (packet.getType() == PacketType.Keepalive || packet.getType() == PacketType.Touche)
-										eventSource.sendEvent(new InternalEvent.IncomingPacket(new QSYPacket(channel.socket().getInetAddress(), data)));
+							try {
+								if (channel.read(connection.buffer) < 0) {
+									// El nodo cerro la conexion, sera desconectado por el KeepAlive.
+									key.cancel();
+									continue;
 								}
+							} catch (IOException e) {
+								// La conexion fallo, el nodo sera desconectado por el KeepAlive.
+								key.cancel();
+								closeChannel(channel);
+								continue;
 							}
+							decoded += decode(connection);
 						}
 					}
 					selector.selectedKeys().clear();
+
+					long elapsed = System.nanoTime() - start;
+					loops = loops + 1;
+					keysReady = keysReady + ready;
+					framesDecoded = framesDecoded + decoded;
+					loopNanos = loopNanos + elapsed;
+					if (elapsed > maxLoopNanos)
+						maxLoopNanos = elapsed;
+					lastKeysReady = ready;
+					lastFramesDecoded = decoded;
+					lastLoopNanos = elapsed;
 				} catch (ClosedSelectorException e) {
 					running = false;
-				} catch (IllegalArgumentException e) {
-					// No se pudo construir el paquete recibido.
-					e.printStackTrace();
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
 			}
 		}
 
+		private void closeChannel(SocketChannel channel) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Decodifica todas las tramas completas que se encuentran en el buffer de la
+		 * conexion, y conserva los bytes sobrantes para la proxima lectura. Devuelve
+		 * la cantidad de tramas decodificadas.
+		 */
+		private int decode(Connection connection) {
+			ByteBuffer buffer = connection.buffer;
+			buffer.flip();
+			int decoded = 0;
+			QSYFrame frame;
+			while ((frame = connection.decoder.next(buffer)) != null) {
+				++decoded;
+				switch (frame.getType()) {
+				case Keepalive:
+					keepAlive.keepAlive(connection.physicalId);
+					break;
+				case Touche:
+					keepAlive.touche(connection.physicalId);
+					publishTouche(frame);
+					eventSource.sendEvent(new InternalEvent.IncomingTouche(frame.getPhysicalId(), frame.getNumberOfStep(), frame.getColor(), frame.getDelay()));
+					break;
+				default:
+					break;
+				}
+			}
+			buffer.compact();
+			return decoded;
+		}
+
+		private void publishTouche(QSYFrame frame) {
+			TouchStream[] streams = touchStreams;
+			if (streams.length == 0)
+				return;
+
+			long timestamp = System.nanoTime();
+			int colorIndex = Color.indexOf(frame.getRed(), frame.getGreen(), frame.getBlue());
+			for (TouchStream stream : streams)
+				stream.publish(frame.getPhysicalId(), frame.getNumberOfStep(), colorIndex, frame.getDelay(), timestamp);
+		}
+
+	}
+
+	/**
+	 * La informacion de cada conexion se adjunta a su SelectionKey, evitando
+	 * busquedas por cada lectura.
+	 */
+	private static final class Connection {
+
+		private final int physicalId;
+		private final ByteBuffer buffer;
+		private final FrameDecoder decoder;
+
+		public Connection(int physicalId) {
+			this.physicalId = physicalId;
+			this.buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			this.decoder = new FrameDecoder();
+		}
+
 	}
 
 	private static abstract class ReceiverCommand {
 
-		public abstract void execute() throws Exception;
+		public abstract void execute(Reactor reactor) throws Exception;
 
 	}
 
-	private final class NewNodeTask extends ReceiverCommand {
+	private static final class NewNodeTask extends ReceiverCommand {
 
 		private final int physicalId;
 		private final SocketChannel socket;
@@ -138,16 +353,17 @@ final class Receiver extends EventSourceI<InternalEvent> implements AutoCloseabl
 		}
 
 		@Override
-		public void execute() throws Exception {
-			if (!buffers.containsKey(physicalId)) {
-				if (socket.register(selector, SelectionKey.OP_READ, physicalId) != null)
-					buffers.put(physicalId, ByteBuffer.allocate(QSYPacket.PACKET_SIZE));
+		public void execute(Reactor reactor) throws Exception {
+			if (!reactor.connections.containsKey(physicalId)) {
+				Connection connection = new Connection(physicalId);
+				if (socket.register(reactor.selector, SelectionKey.OP_READ, connection) != null)
+					reactor.connections.put(physicalId, connection);
 			}
 		}
 
 	}
 
-	private final class RemoveNodeTask extends ReceiverCommand {
+	private static final class RemoveNodeTask extends ReceiverCommand {
 
 		private final int physicalId;
 		private final SocketChannel socket;
@@ -158,15 +374,16 @@ final class Receiver extends EventSourceI<InternalEvent> implements AutoCloseabl
 		}
 
 		@Override
-		public void execute() throws Exception {
-			if (buffers.containsKey(physicalId)) {
-				SelectionKey key = socket.keyFor(selector);
+		public void execute(Reactor reactor) throws Exception {
+			Connection connection = reactor.connections.remove(physicalId);
+			if (connection != null) {
+				SelectionKey key = socket.keyFor(reactor.selector);
 				if (key != null)
 					key.cancel();
-				buffers.remove(physicalId).clear();
+				connection.buffer.clear();
 			}
 		}
 
 	}
 
-}
\ No newline at end of file
+}
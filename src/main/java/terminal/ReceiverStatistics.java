@@ -0,0 +1,230 @@
+package terminal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * La clase ReceiverStatistics contiene una copia de los contadores de
+ * recepcion de cada uno de los reactores del Receiver. Cada iteracion de un
+ * reactor atiende a todas las conexiones que se encuentran listas para ser
+ * leidas, y su duracion no incluye el tiempo de espera en el Selector.
+ * Adicionalmente se incluye la cantidad de veces que se perdio la alineacion
+ * del flujo de cada nodo.
+ */
+public final class ReceiverStatistics {
+
+	private final List<ReactorStatistics> reactors;
+	private final Map<Integer, Long> resyncs;
+
+	ReceiverStatistics(List<ReactorStatistics> reactors, Map<Integer, Long> resyncs) {
+		this.reactors = Collections.unmodifiableList(reactors);
+		this.resyncs = Collections.unmodifiableMap(resyncs);
+	}
+
+	/**
+	 * Devuelve los contadores de cada reactor.
+	 */
+	public List<ReactorStatistics> getReactors() {
+		return reactors;
+	}
+
+	/**
+	 * Devuelve la cantidad de conexiones atendidas por todos los reactores.
+	 */
+	public int getConnections() {
+		int connections = 0;
+		for (ReactorStatistics reactor : reactors)
+			connections += reactor.getConnections();
+		return connections;
+	}
+
+	/**
+	 * Devuelve la cantidad total de tramas decodificadas.
+	 */
+	public long getFramesDecoded() {
+		long framesDecoded = 0;
+		for (ReactorStatistics reactor : reactors)
+			framesDecoded += reactor.getFramesDecoded();
+		return framesDecoded;
+	}
+
+	/**
+	 * Devuelve la cantidad de resincronizaciones del flujo de cada nodo conectado,
+	 * indexada por su id fisico.
+	 */
+	public Map<Integer, Long> getResyncs() {
+		return resyncs;
+	}
+
+	/**
+	 * Devuelve la cantidad total de resincronizaciones de los nodos conectados.
+	 */
+	public long getTotalResyncs() {
+		long total = 0;
+		for (ReactorStatistics reactor : reactors)
+			total += reactor.getResyncs();
+		return total;
+	}
+
+	/**
+	 * Devuelve la mayor duracion de una iteracion entre todos los reactores, en
+	 * nanosegundos.
+	 */
+	public long getMaxLoopNanos() {
+		long maxLoopNanos = 0;
+		for (ReactorStatistics reactor : reactors)
+			maxLoopNanos = Math.max(maxLoopNanos, reactor.getMaxLoopNanos());
+		return maxLoopNanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (ReactorStatistics reactor : reactors) {
+			if (builder.length() > 0)
+				builder.append('\n');
+			builder.append(reactor);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Contadores de un reactor en particular.
+	 */
+	public static final class ReactorStatistics {
+
+		private final String name;
+		private final int connections;
+		private final long loops;
+		private final long keysReady;
+		private final long framesDecoded;
+		private final long loopNanos;
+		private final long maxLoopNanos;
+		private final int lastKeysReady;
+		private final int lastFramesDecoded;
+		private final long lastLoopNanos;
+		private final long resyncs;
+		private final long skippedBytes;
+
+		ReactorStatistics(String name, int connections, long loops, long keysReady, long framesDecoded, long loopNanos, long maxLoopNanos, int lastKeysReady, int lastFramesDecoded,
+				long lastLoopNanos, long resyncs, long skippedBytes) {
+			this.name = name;
+			this.connections = connections;
+			this.loops = loops;
+			this.keysReady = keysReady;
+			this.framesDecoded = framesDecoded;
+			this.loopNanos = loopNanos;
+			this.maxLoopNanos = maxLoopNanos;
+			this.lastKeysReady = lastKeysReady;
+			this.lastFramesDecoded = lastFramesDecoded;
+			this.lastLoopNanos = lastLoopNanos;
+			this.resyncs = resyncs;
+			this.skippedBytes = skippedBytes;
+		}
+
+		/**
+		 * Devuelve el nombre del thread del reactor.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Devuelve la cantidad de conexiones asignadas al reactor.
+		 */
+		public int getConnections() {
+			return connections;
+		}
+
+		/**
+		 * Devuelve la cantidad de iteraciones realizadas.
+		 */
+		public long getLoops() {
+			return loops;
+		}
+
+		/**
+		 * Devuelve la cantidad total de conexiones que se encontraron listas para ser
+		 * leidas.
+		 */
+		public long getKeysReady() {
+			return keysReady;
+		}
+
+		/**
+		 * Devuelve la cantidad total de tramas decodificadas.
+		 */
+		public long getFramesDecoded() {
+			return framesDecoded;
+		}
+
+		/**
+		 * Devuelve el tiempo total dedicado a procesar las iteraciones, en
+		 * nanosegundos.
+		 */
+		public long getLoopNanos() {
+			return loopNanos;
+		}
+
+		/**
+		 * Devuelve la duracion promedio de una iteracion, en nanosegundos.
+		 */
+		public double getAverageLoopNanos() {
+			return (loops == 0) ? 0 : (double) loopNanos / loops;
+		}
+
+		/**
+		 * Devuelve la mayor duracion de una iteracion, en nanosegundos.
+		 */
+		public long getMaxLoopNanos() {
+			return maxLoopNanos;
+		}
+
+		/**
+		 * Devuelve la cantidad de conexiones listas en la ultima iteracion.
+		 */
+		public int getLastKeysReady() {
+			return lastKeysReady;
+		}
+
+		/**
+		 * Devuelve la cantidad de tramas decodificadas en la ultima iteracion.
+		 */
+		public int getLastFramesDecoded() {
+			return lastFramesDecoded;
+		}
+
+		/**
+		 * Devuelve la duracion de la ultima iteracion, en nanosegundos.
+		 */
+		public long getLastLoopNanos() {
+			return lastLoopNanos;
+		}
+
+		/**
+		 * Devuelve la cantidad de resincronizaciones de los nodos conectados al
+		 * reactor.
+		 */
+		public long getResyncs() {
+			return resyncs;
+		}
+
+		/**
+		 * Devuelve la cantidad de bytes descartados de los nodos conectados al
+		 * reactor.
+		 */
+		public long getSkippedBytes() {
+			return skippedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": CONNECTIONS = " + connections + " || LOOPS = " + loops + " || KEYS READY = " + keysReady + " || FRAMES DECODED = " + framesDecoded + " || AVERAGE LOOP NANOS = "
+					+ (long) getAverageLoopNanos() + " || MAX LOOP NANOS = " + maxLoopNanos
+					+ " || RESYNCS = " + resyncs;
+		}
+
+	}
+
+}
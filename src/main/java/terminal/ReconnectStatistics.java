@@ -0,0 +1,57 @@
+package terminal;
+
+/**
+ * La clase ReconnectStatistics contiene una copia de los contadores de
+ * reconexion de los nodos que perdieron la conexion. La latencia de una
+ * reconexion es el tiempo transcurrido desde que se detecto la perdida de la
+ * conexion hasta que la misma fue restablecida.
+ */
+public final class ReconnectStatistics {
+
+	private final long reconnections;
+	private final long failedReconnections;
+	private final long totalLatency;
+	private final long maxLatency;
+
+	ReconnectStatistics(long reconnections, long failedReconnections, long totalLatency, long maxLatency) {
+		this.reconnections = reconnections;
+		this.failedReconnections = failedReconnections;
+		this.totalLatency = totalLatency;
+		this.maxLatency = maxLatency;
+	}
+
+	/**
+	 * Devuelve la cantidad de nodos reconectados.
+	 */
+	public long getReconnections() {
+		return reconnections;
+	}
+
+	/**
+	 * Devuelve la cantidad de nodos que no pudieron reconectarse y fueron
+	 * desconectados del sistema.
+	 */
+	public long getFailedReconnections() {
+		return failedReconnections;
+	}
+
+	/**
+	 * Devuelve la latencia promedio de las reconexiones, en milisegundos.
+	 */
+	public double getAverageLatency() {
+		return (reconnections == 0) ? 0 : (double) totalLatency / reconnections;
+	}
+
+	/**
+	 * Devuelve la mayor latencia de una reconexion, en milisegundos.
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	@Override
+	public String toString() {
+		return "RECONNECTIONS = " + reconnections + " || FAILED RECONNECTIONS = " + failedReconnections + " || AVERAGE LATENCY = " + (long) getAverageLatency() + " || MAX LATENCY = " + maxLatency;
+	}
+
+}
@@ -2,47 +2,163 @@ package terminal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import terminal.Event.InternalEvent;
-
+import terminal.TerminalConfiguration.SenderOverflowPolicy;
+
+/**
+ * La clase Sender envia los comandos hacia los nodos. Los nodos se reparten
+ * segun su id fisico entre varios shards, cada uno con su propio thread
+ * manejado por un Selector, por lo que todos los comandos de un mismo nodo son
+ * enviados en orden por el mismo shard. Cada nodo posee su propia cola de
+ * salida acotada, por lo que un nodo lento solo demora los comandos dirigidos
+ * hacia el mismo.
+ */
 final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable {
 
-	private final EventSource<InternalEvent> eventSource;
-	private final LinkedBlockingQueue<Command> pendingTasks;
+	private static final int MAX_BATCH_SIZE = 256;
 
-	private final TreeMap<Integer, SocketChannel> nodes;
-	private final ByteBuffer byteBuffer;
+	private final EventSource<InternalEvent> eventSource;
+	private final Shard[] shards;
+	/**
+	 * Cantidad de comandos de cada nodo, indexada por id fisico, que fueron
+	 * entregados al Sender y aun no terminaron de escribirse en el socket ni
+	 * fueron descartados.
+	 */
+	private final AtomicIntegerArray unsentCommands;
 
-	private final Thread senderTask;
+	private final int queueCapacity;
+	private final SenderOverflowPolicy overflowPolicy;
 
 	private volatile boolean closed;
 
-	public Sender() {
+	public Sender(int numberOfShards, int queueCapacity, SenderOverflowPolicy overflowPolicy) throws IOException {
 		this.eventSource = new EventSource<>();
-		this.pendingTasks = new LinkedBlockingQueue<>();
-
+		this.unsentCommands = new AtomicIntegerArray(QSYPacket.MAX_ID_SIZE + 1);
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
 		this.closed = false;
 
-		this.nodes = new TreeMap<>();
-		this.byteBuffer = ByteBuffer.allocate(QSYPacket.PACKET_SIZE);
-
-		this.senderTask = new Thread(new SenderTask(), "Sender");
-		this.senderTask.start();
+		this.shards = new Shard[numberOfShards];
+		try {
+			for (int i = 0; i < numberOfShards; i++)
+				shards[i] = new Shard((numberOfShards == 1) ? "Sender" : "Sender-" + i);
+		} catch (IOException e) {
+			for (Shard shard : shards) {
+				try {
+					if (shard != null)
+						shard.close();
+				} catch (Exception ex) {
+					ex.printStackTrace();
+				}
+			}
+			throw e;
+		}
 	}
 
 	public void newNode(int physicalId, SocketChannel socket) {
-		pendingTasks.add(new NewNodeCommand(physicalId, socket));
+		shardFor(physicalId).addTask(new NewNodeCommand(physicalId, socket));
 	}
 
 	public void command(QSYPacket packet) {
-		pendingTasks.add(new SenderCommand(packet));
+		if (packet.getType() == QSYPacket.PacketType.Command)
+			unsentCommands.incrementAndGet(packet.getPhysicalId());
+		shardFor(packet.getPhysicalId()).addTask(new SenderCommand(packet));
+	}
+
+	/**
+	 * Encola un lote de comandos. Los comandos de cada shard se encolan juntos,
+	 * por lo que se envian en la misma ronda de escritura.
+	 */
+	public void command(List<QSYPacket> packets) {
+		for (QSYPacket packet : packets) {
+			if (packet.getType() == QSYPacket.PacketType.Command)
+				unsentCommands.incrementAndGet(packet.getPhysicalId());
+		}
+		if (shards.length == 1) {
+			shards[0].addTask(new BatchCommand(packets));
+			return;
+		}
+
+		ArrayList<ArrayList<QSYPacket>> batches = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++)
+			batches.add(null);
+		for (QSYPacket packet : packets) {
+			int index = shardIndex(packet.getPhysicalId());
+			ArrayList<QSYPacket> batch = batches.get(index);
+			if (batch == null)
+				batches.set(index, batch = new ArrayList<>());
+			batch.add(packet);
+		}
+		for (int i = 0; i < shards.length; i++) {
+			if (batches.get(i) != null)
+				shards[i].addTask(new BatchCommand(batches.get(i)));
+		}
+	}
+
+	public void command(CommandTemplate template, int physicalId, int numberOfStep) {
+		unsentCommands.incrementAndGet(physicalId);
+		shardFor(physicalId).addTask(new TemplateCommand(template, physicalId, numberOfStep));
 	}
 
 	public void removeNode(int physicalId) {
-		pendingTasks.add(new RemoveNodeCommand(physicalId));
+		shardFor(physicalId).addTask(new RemoveNodeCommand(physicalId));
+	}
+
+	/**
+	 * Devuelve true si algun comando dirigido al nodo indicado aun no termino de
+	 * escribirse en su socket. Un comando enviado por otro medio en ese momento
+	 * podria llegar antes que los pendientes.
+	 */
+	public boolean hasUnsentCommands(int physicalId) {
+		return unsentCommands.get(physicalId) > 0;
+	}
+
+	private Shard shardFor(int physicalId) {
+		return shards[shardIndex(physicalId)];
+	}
+
+	private int shardIndex(int physicalId) {
+		int hash = physicalId * 0x9E3779B9;
+		return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+	}
+
+	/**
+	 * Devuelve una copia de los contadores de envio acumulados hasta el momento
+	 * por todos los shards, junto con la cantidad de comandos pendientes en la
+	 * cola de cada nodo.
+	 */
+	public SenderStatistics getStatistics() {
+		long batches = 0;
+		long packets = 0;
+		long writeCalls = 0;
+		int maxBatchSize = 0;
+		long droppedPackets = 0;
+		TreeMap<Integer, Integer> queueDepths = new TreeMap<>();
+		for (Shard shard : shards) {
+			batches += shard.batches;
+			packets += shard.packets;
+			writeCalls += shard.writeCalls;
+			maxBatchSize = Math.max(maxBatchSize, shard.maxBatchSize);
+			droppedPackets += shard.droppedPackets;
+			for (Map.Entry<Integer, Shard.NodeQueue> entry : shard.nodes.entrySet())
+				queueDepths.put(entry.getKey(), entry.getValue().depth);
+		}
+		return new SenderStatistics(batches, packets, writeCalls, maxBatchSize, droppedPackets, queueDepths);
 	}
 
 	@Override
@@ -56,33 +172,110 @@ final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable
 	}
 
 	@Override
-	public void close() throws InterruptedException {
+	public void close() throws IOException, InterruptedException {
 		if (!closed) {
 			closed = true;
-			senderTask.interrupt();
-
 			try {
-				senderTask.join();
+				for (Shard shard : shards)
+					shard.close();
 			} finally {
-				pendingTasks.clear();
-				nodes.clear();
-				byteBuffer.clear();
 				eventSource.close();
 			}
 		}
 	}
 
-	private final class SenderTask implements Runnable {
+	/**
+	 * Cada shard atiende a un subconjunto de los nodos desde su propio thread. Los
+	 * comandos se depositan en una cola concurrente y se despierta al Selector
+	 * solo si el mismo no fue despertado previamente.
+	 */
+	private final class Shard implements Runnable {
+
+		private final ConcurrentLinkedQueue<Command> pendingTasks;
+		private final AtomicBoolean wakenUp;
+		private final Selector selector;
+
+		private final ConcurrentHashMap<Integer, NodeQueue> nodes;
+		private final ArrayDeque<ByteBuffer> bufferPool;
+		private final ArrayList<NodeQueue> dirtyNodes;
+		private final QSYFrame frame;
+
+		private volatile long batches;
+		private volatile long packets;
+		private volatile long writeCalls;
+		private volatile int maxBatchSize;
+		private volatile long droppedPackets;
+
+		private final Thread shardTask;
+
+		private volatile boolean running;
+
+		public Shard(String name) throws IOException {
+			this.pendingTasks = new ConcurrentLinkedQueue<>();
+			this.wakenUp = new AtomicBoolean(false);
+			this.selector = Selector.open();
+
+			this.nodes = new ConcurrentHashMap<>();
+			this.bufferPool = new ArrayDeque<>();
+			this.dirtyNodes = new ArrayList<>();
+			this.frame = new QSYFrame();
+
+			this.running = true;
+			this.shardTask = new Thread(this, name);
+			this.shardTask.start();
+		}
+
+		public void addTask(Command command) {
+			pendingTasks.add(command);
+			if (wakenUp.compareAndSet(false, true))
+				selector.wakeup();
+		}
 
-		private volatile boolean running = true;
+		public void close() throws IOException, InterruptedException {
+			try {
+				selector.close();
+			} finally {
+				try {
+					shardTask.join();
+				} finally {
+					pendingTasks.clear();
+					nodes.clear();
+					bufferPool.clear();
+				}
+			}
+		}
 
 		@Override
 		public void run() {
 			while (running) {
 				try {
-					Command task = pendingTasks.take();
-					task.execute();
-				} catch (InterruptedException e) {
+					selector.select();
+					wakenUp.set(false);
+
+					for (SelectionKey key : selector.selectedKeys()) {
+						try {
+							if (key.isWritable())
+								((NodeQueue) key.attachment()).flush();
+						} catch (CancelledKeyException e) {
+						}
+					}
+					selector.selectedKeys().clear();
+
+					int batchSize = 0;
+					Command task;
+					while ((task = pendingTasks.poll()) != null) {
+						try {
+							batchSize += task.execute(this);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+						if (batchSize >= MAX_BATCH_SIZE) {
+							flushDirtyNodes();
+							batchSize = 0;
+						}
+					}
+					flushDirtyNodes();
+				} catch (ClosedSelectorException e) {
 					running = false;
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -90,15 +283,228 @@ final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable
 			}
 		}
 
+		private void flushDirtyNodes() {
+			int batchSize = 0;
+			for (NodeQueue node : dirtyNodes) {
+				batchSize += node.pendingInBatch;
+				node.pendingInBatch = 0;
+				node.dirty = false;
+				node.flush();
+			}
+			dirtyNodes.clear();
+
+			if (batchSize > 0) {
+				++batches;
+				packets += batchSize;
+				if (batchSize > maxBatchSize)
+					maxBatchSize = batchSize;
+			}
+		}
+
+		public void newNode(int physicalId, SocketChannel socket) throws IOException {
+			NodeQueue node = nodes.get(physicalId);
+			if (node != null) {
+				if (node.channel.equals(socket))
+					return;
+				nodes.remove(physicalId).release();
+			}
+
+			ByteBuffer ring = bufferPool.poll();
+			if (ring == null)
+				ring = ByteBuffer.allocateDirect(queueCapacity * QSYPacket.PACKET_SIZE);
+			nodes.put(physicalId, new NodeQueue(physicalId, socket, ring));
+		}
+
+		/**
+		 * Reserva el lugar para un nuevo paquete en la cola del nodo indicado.
+		 * Devuelve null si el nodo no existe o si el paquete debe descartarse.
+		 */
+		public QSYFrame append(int physicalId) {
+			NodeQueue node = nodes.get(physicalId);
+			QSYFrame slot = (node != null) ? node.append() : null;
+			if (slot == null)
+				unsentCommands.decrementAndGet(physicalId);
+			return slot;
+		}
+
+		/**
+		 * Copia el paquete al final de la cola de su nodo. Devuelve false si el
+		 * paquete no es un comando, si el nodo no existe o si fue descartado.
+		 */
+		public boolean append(QSYPacket packet) {
+			if (packet.getType() != QSYPacket.PacketType.Command)
+				return false;
+
+			QSYFrame slot = append(packet.getPhysicalId());
+			if (slot == null)
+				return false;
+
+			byte[] data = packet.getRawData();
+			ByteBuffer buffer = slot.getBuffer();
+			for (int i = 0; i < QSYPacket.PACKET_SIZE; i++)
+				buffer.put(slot.getOffset() + i, data[i]);
+			return true;
+		}
+
+		public void removeNode(int physicalId) {
+			NodeQueue node = nodes.remove(physicalId);
+			if (node != null)
+				node.release();
+		}
+
+		/**
+		 * Cola de salida de un nodo. Los paquetes se almacenan en un buffer circular
+		 * directo tomado del pool, y se envian con una escritura que abarca todos los
+		 * paquetes pendientes. Solo se accede desde el thread del shard.
+		 */
+		private final class NodeQueue {
+
+			private final int physicalId;
+			private final SocketChannel channel;
+			private final SelectionKey key;
+			private final ByteBuffer ring;
+			private final ByteBuffer[] views;
+
+			private int head;
+			private int size;
+			private int pendingInBatch;
+			private boolean dirty;
+			private boolean failed;
+			private volatile int depth;
+
+			public NodeQueue(int physicalId, SocketChannel channel, ByteBuffer ring) throws IOException {
+				this.physicalId = physicalId;
+				this.channel = channel;
+				this.ring = ring;
+				this.views = new ByteBuffer[] { ring.duplicate(), ring.duplicate() };
+				this.head = 0;
+				this.size = 0;
+				this.key = channel.register(selector, 0, this);
+			}
+
+			/**
+			 * Reserva el lugar para un nuevo paquete al final de la cola y posiciona el
+			 * flyweight sobre el mismo. Si la cola esta llena y el socket no se encuentra
+			 * saturado, se intenta enviar lo pendiente antes de aplicar la politica de
+			 * desborde. Devuelve null si el paquete debe descartarse.
+			 */
+			public QSYFrame append() {
+				if (failed)
+					return null;
+
+				// Luego de una escritura parcial la cantidad de bytes pendientes no es
+				// multiplo del tamano del paquete, por lo que la cola se considera llena
+				// cuando no queda lugar para un paquete completo.
+				int capacity = ring.capacity();
+				if (size > capacity - QSYPacket.PACKET_SIZE && (key.interestOps() & SelectionKey.OP_WRITE) == 0)
+					flush();
+				if (size > capacity - QSYPacket.PACKET_SIZE && !applyOverflowPolicy())
+					return null;
+
+				int tail = (head + size) % capacity;
+				size += QSYPacket.PACKET_SIZE;
+				depth = (size + QSYPacket.PACKET_SIZE - 1) / QSYPacket.PACKET_SIZE;
+				++pendingInBatch;
+				if (!dirty) {
+					dirty = true;
+					dirtyNodes.add(this);
+				}
+				return frame.wrap(ring, tail);
+			}
+
+			private boolean applyOverflowPolicy() {
+				switch (overflowPolicy) {
+				case DropOldest:
+					// Un paquete que ya comenzo a enviarse no puede descartarse sin corromper el
+					// flujo, en ese caso se descarta el paquete nuevo.
+					++droppedPackets;
+					if (head % QSYPacket.PACKET_SIZE != 0)
+						return false;
+					head = (head + QSYPacket.PACKET_SIZE) % ring.capacity();
+					size -= QSYPacket.PACKET_SIZE;
+					unsentCommands.decrementAndGet(physicalId);
+					return true;
+				case Disconnect:
+					droppedPackets += 1 + (size + QSYPacket.PACKET_SIZE - 1) / QSYPacket.PACKET_SIZE;
+					discardPending();
+					failed = true;
+					key.interestOps(0);
+					eventSource.sendEvent(new InternalEvent.SenderOverflow(physicalId));
+					return false;
+				default:
+					++droppedPackets;
+					return false;
+				}
+			}
+
+			public void flush() {
+				if (size == 0 || !key.isValid())
+					return;
+
+				try {
+					int capacity = ring.capacity();
+					int first = Math.min(size, capacity - head);
+					views[0].limit(head + first).position(head);
+					int length = 1;
+					if (first < size) {
+						views[1].limit(size - first).position(0);
+						length = 2;
+					}
+
+					int bytesTransmitted = (int) channel.write(views, 0, length);
+					++writeCalls;
+					int completed = (head % QSYPacket.PACKET_SIZE + bytesTransmitted) / QSYPacket.PACKET_SIZE;
+					if (completed > 0)
+						unsentCommands.addAndGet(physicalId, -completed);
+					head = (head + bytesTransmitted) % capacity;
+					size -= bytesTransmitted;
+					depth = (size + QSYPacket.PACKET_SIZE - 1) / QSYPacket.PACKET_SIZE;
+
+					key.interestOps((size > 0) ? SelectionKey.OP_WRITE : 0);
+				} catch (IOException e) {
+					// El nodo sera desconectado por el KeepAlive.
+					droppedPackets += (size + QSYPacket.PACKET_SIZE - 1) / QSYPacket.PACKET_SIZE;
+					discardPending();
+					failed = true;
+					key.interestOps(0);
+				}
+			}
+
+			/**
+			 * Descarta los paquetes pendientes, incluyendo uno que haya comenzado a
+			 * enviarse.
+			 */
+			private void discardPending() {
+				int pending = (size + QSYPacket.PACKET_SIZE - 1) / QSYPacket.PACKET_SIZE;
+				if (pending > 0)
+					unsentCommands.addAndGet(physicalId, -pending);
+				size = 0;
+				depth = 0;
+			}
+
+			public void release() {
+				key.cancel();
+				discardPending();
+				failed = true;
+				ring.clear();
+				bufferPool.add(ring);
+			}
+
+		}
+
 	}
 
 	private static abstract class Command {
 
-		public abstract void execute() throws Exception;
+		/**
+		 * Ejecuta el comando sobre el shard que atiende al nodo y devuelve la
+		 * cantidad de paquetes encolados.
+		 */
+		public abstract int execute(Shard shard) throws Exception;
 
 	}
 
-	private final class NewNodeCommand extends Command {
+	private static final class NewNodeCommand extends Command {
 
 		private final int physicalId;
 		private final SocketChannel socket;
@@ -109,16 +515,15 @@ final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable
 		}
 
 		@Override
-		public void execute() throws Exception {
-			if (!nodes.containsKey(physicalId) || !nodes.get(physicalId).equals(socket))
-				nodes.put(physicalId, socket);
+		public int execute(Shard shard) throws Exception {
+			shard.newNode(physicalId, socket);
+			return 0;
 		}
 
 	}
 
-	private final class SenderCommand extends Command {
+	private static final class SenderCommand extends Command {
 
-		private static final int MAX_TRIES = 256;
 		private final QSYPacket packet;
 
 		public SenderCommand(QSYPacket packet) {
@@ -126,32 +531,57 @@ final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable
 		}
 
 		@Override
-		public void execute() throws Exception {
-			if (packet.getType() != QSYPacket.PacketType.Command)
-				return;
+		public int execute(Shard shard) throws Exception {
+			return shard.append(packet) ? 1 : 0;
+		}
 
-			SocketChannel channel = nodes.get(packet.getPhysicalId());
+	}
 
-			if (channel != null) {
-				try {
-					byteBuffer.put(packet.getRawData());
-					byteBuffer.flip();
-					byte bytesTransmitted = 0;
-					short tries = 0;
-					while (bytesTransmitted < QSYPacket.PACKET_SIZE && tries++ < MAX_TRIES)
-						bytesTransmitted += channel.write(byteBuffer);
-
-					if (bytesTransmitted != QSYPacket.PACKET_SIZE)
-						throw new IOException("El paquete hacia el nodo " + packet.getPhysicalId() + " no se pudo enviar correctamente");
-				} finally {
-					byteBuffer.clear();
-				}
+	private static final class BatchCommand extends Command {
+
+		private final List<QSYPacket> packets;
+
+		public BatchCommand(List<QSYPacket> packets) {
+			this.packets = packets;
+		}
+
+		@Override
+		public int execute(Shard shard) throws Exception {
+			int count = 0;
+			for (QSYPacket packet : packets) {
+				if (shard.append(packet))
+					++count;
 			}
+			return count;
+		}
+
+	}
+
+	private static final class TemplateCommand extends Command {
+
+		private final CommandTemplate template;
+		private final int physicalId;
+		private final int numberOfStep;
+
+		public TemplateCommand(CommandTemplate template, int physicalId, int numberOfStep) {
+			this.template = template;
+			this.physicalId = physicalId;
+			this.numberOfStep = numberOfStep;
+		}
+
+		@Override
+		public int execute(Shard shard) throws Exception {
+			QSYFrame slot = shard.append(physicalId);
+			if (slot == null)
+				return 0;
+
+			template.encode(slot, physicalId, numberOfStep);
+			return 1;
 		}
 
 	}
 
-	private final class RemoveNodeCommand extends Command {
+	private static final class RemoveNodeCommand extends Command {
 
 		private final int physicalId;
 
@@ -160,8 +590,9 @@ final class Sender extends EventSourceI<InternalEvent> implements AutoCloseable
 		}
 
 		@Override
-		public void execute() throws Exception {
-			nodes.remove(physicalId);
+		public int execute(Shard shard) throws Exception {
+			shard.removeNode(physicalId);
+			return 0;
 		}
 
 	}
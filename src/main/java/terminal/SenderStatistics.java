@@ -0,0 +1,108 @@
+package terminal;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * La clase SenderStatistics contiene una copia de los contadores de envio de
+ * comandos hacia los nodos. Cada lote agrupa los comandos que se encontraban
+ * encolados al momento de enviar, los cuales se escriben con una unica
+ * llamada por nodo. Adicionalmente se incluye la cantidad de comandos
+ * pendientes en la cola de salida de cada nodo.
+ */
+public final class SenderStatistics {
+
+	private final long batches;
+	private final long packets;
+	private final long writeCalls;
+	private final int maxBatchSize;
+	private final long droppedPackets;
+	private final Map<Integer, Integer> queueDepths;
+
+	SenderStatistics(long batches, long packets, long writeCalls, int maxBatchSize, long droppedPackets, Map<Integer, Integer> queueDepths) {
+		this.batches = batches;
+		this.packets = packets;
+		this.writeCalls = writeCalls;
+		this.maxBatchSize = maxBatchSize;
+		this.droppedPackets = droppedPackets;
+		this.queueDepths = Collections.unmodifiableMap(queueDepths);
+	}
+
+	/**
+	 * Devuelve la cantidad de lotes enviados.
+	 */
+	public long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Devuelve la cantidad total de paquetes enviados.
+	 */
+	public long getPackets() {
+		return packets;
+	}
+
+	/**
+	 * Devuelve la cantidad de llamadas de escritura realizadas sobre los sockets.
+	 */
+	public long getWriteCalls() {
+		return writeCalls;
+	}
+
+	/**
+	 * Devuelve la cantidad de llamadas de escritura ahorradas respecto de enviar
+	 * cada paquete por separado.
+	 */
+	public long getSavedWriteCalls() {
+		return packets - writeCalls;
+	}
+
+	/**
+	 * Devuelve la cantidad de paquetes del lote mas grande enviado.
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Devuelve la cantidad promedio de paquetes por lote enviado.
+	 */
+	public double getAverageBatchSize() {
+		return (batches == 0) ? 0 : (double) packets / batches;
+	}
+
+	/**
+	 * Devuelve la cantidad de paquetes descartados por desborde de la cola de
+	 * salida o por errores de escritura.
+	 */
+	public long getDroppedPackets() {
+		return droppedPackets;
+	}
+
+	/**
+	 * Devuelve la cantidad de comandos pendientes de envio de cada nodo, indexada
+	 * por su id fisico.
+	 */
+	public Map<Integer, Integer> getQueueDepths() {
+		return queueDepths;
+	}
+
+	/**
+	 * Devuelve la mayor cantidad de comandos pendientes de envio entre todos los
+	 * nodos.
+	 */
+	public int getMaxQueueDepth() {
+		int maxQueueDepth = 0;
+		for (int depth : queueDepths.values())
+			if (depth > maxQueueDepth)
+				maxQueueDepth = depth;
+		return maxQueueDepth;
+	}
+
+	@Override
+	public String toString() {
+		return "BATCHES = " + batches + " || PACKETS = " + packets + " || WRITE CALLS = " + writeCalls + " || MAX BATCH SIZE = " + maxBatchSize + " || DROPPED PACKETS = " + droppedPackets
+				+ " || MAX QUEUE DEPTH = " + getMaxQueueDepth();
+	}
+
+}
@@ -1,21 +1,36 @@
 package terminal;
 
+import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import terminal.Event.ExternalEvent;
+import terminal.Event.ExternalEvent.ExternalEventVisitor;
 import terminal.Event.ExternalEvent.ExecutionInterrupted.Reason;
 import terminal.Event.InternalEvent.CloseSignal;
 import terminal.Event.InternalEvent.ExecutionFinished;
 import terminal.Event.InternalEvent.ExecutionStarted;
 import terminal.Event.InternalEvent.IncomingPacket;
+import terminal.Event.InternalEvent.IncomingTouche;
 import terminal.Event.InternalEvent.KeepAliveError;
+import terminal.Event.InternalEvent.NodeConnected;
+import terminal.Event.InternalEvent.NodeConnectionFailed;
+import terminal.Event.InternalEvent.ScheduledCommands;
+import terminal.Event.InternalEvent.SenderOverflow;
 import terminal.Event.InternalEvent.StepTimeOut;
 import terminal.QSYPacket.CommandArgs;
+import terminal.QSYPacket.PacketType;
 import terminal.QSYPacket.ToucheArgs;
 
 /**
@@ -26,24 +41,68 @@ import terminal.QSYPacket.ToucheArgs;
  */
 public final class Terminal extends EventSourceI<ExternalEvent> implements AutoCloseable {
 
+	private static final long RECONNECT_BASE_DELAY = 100;
+	private static final long RECONNECT_MAX_DELAY = 2000;
+
 	private final InetAddress interfaceAddress;
+	private final TerminalConfiguration configuration;
 	private final EventSource<ExternalEvent> eventSource;
 	private final TreeMap<Integer, Node> nodes;
+	private final HashSet<Integer> connecting;
+	private final TreeMap<Integer, Reconnection> reconnecting;
+	/**
+	 * Color, demora, paso e instante de envio del ultimo comando enviado a cada
+	 * nodo, indexados por id fisico. El comando se reenvia en caso de que el nodo
+	 * sea reconectado.
+	 */
+	private final Color[] lastColors;
+	private final long[] lastDelays;
+	private final int[] lastSteps;
+	private final long[] lastCommandTimes;
+	private final ArrayList<TouchStream> touchStreams;
 
 	private volatile MulticastReceiver mutlticastReceiver;
+	private volatile MulticastSender multicastSender;
 	private volatile KeepAlive keepAlive;
 	private volatile Sender sender;
 	private volatile Receiver receiver;
+	private volatile CommandScheduler commandScheduler;
+	private volatile Connector connector;
+	private volatile NodeRegistry nodeRegistry;
 	private volatile MainController mainController;
 	private volatile Executor executor;
 
+	private int multicastNodes;
+
+	private long reconnections;
+	private long failedReconnections;
+	private long totalReconnectLatency;
+	private long maxReconnectLatency;
+
 	private volatile boolean running;
 	private volatile boolean closed;
 
 	public Terminal(String interfaceAddress) throws UnknownHostException {
+		this(interfaceAddress, new TerminalConfiguration());
+	}
+
+	/**
+	 * Crea una Terminal con los parametros opcionales indicados. La configuracion
+	 * se copia, por lo que modificarla luego no tiene efecto.
+	 */
+	public Terminal(String interfaceAddress, TerminalConfiguration configuration) throws UnknownHostException {
 		this.interfaceAddress = (Inet4Address) Inet4Address.getByName(interfaceAddress);
+		this.configuration = new TerminalConfiguration(configuration);
 		this.eventSource = new EventSource<>();
 		this.nodes = new TreeMap<>();
+		this.connecting = new HashSet<>();
+		this.reconnecting = new TreeMap<>();
+		this.lastColors = new Color[QSYPacket.MAX_ID_SIZE + 1];
+		this.lastDelays = new long[QSYPacket.MAX_ID_SIZE + 1];
+		this.lastSteps = new int[QSYPacket.MAX_ID_SIZE + 1];
+		this.lastCommandTimes = new long[QSYPacket.MAX_ID_SIZE + 1];
+		this.touchStreams = new ArrayList<>();
+		this.multicastNodes = 0;
 		this.closed = false;
 		this.running = false;
 	}
@@ -60,15 +119,23 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 		try {
 			executor = null;
 			mutlticastReceiver = new MulticastReceiver(interfaceAddress, (InetAddress) InetAddress.getByName(QSYPacket.MULTICAST_ADDRESS), QSYPacket.MULTICAST_PORT);
-			receiver = new Receiver();
-			sender = new Sender();
-			keepAlive = new KeepAlive();
-			mainController = new MainController(this);
+			multicastSender = new MulticastSender(interfaceAddress, InetAddress.getByName(QSYPacket.MULTICAST_ADDRESS), QSYPacket.MULTICAST_PORT);
+			keepAlive = new KeepAlive(configuration.getFailureDetectorThreshold(), configuration.getAcceptableKeepAlivePause());
+			receiver = new Receiver(configuration.getReceiverThreads(), keepAlive);
+			for (TouchStream touchStream : touchStreams)
+				receiver.addTouchStream(touchStream);
+			sender = new Sender(configuration.getSenderThreads(), configuration.getSenderQueueCapacity(), configuration.getSenderOverflowPolicy());
+			commandScheduler = new CommandScheduler();
+			connector = new Connector(configuration.getMaxConcurrentConnects(), configuration.getConnectTimeout());
+			mainController = new MainController(this, configuration);
 			keepAlive.addListener(mainController);
 			sender.addListener(mainController);
 			receiver.addListener(mainController);
 			mutlticastReceiver.addListener(mainController);
+			commandScheduler.addListener(mainController);
+			connector.addListener(mainController);
 			running = true;
+			connectKnownNodes();
 		} catch (Exception e) {
 			visit(new CloseSignal());
 			throw e;
@@ -98,6 +165,71 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 		return (running) ? nodes.size() : 0;
 	}
 
+	/**
+	 * Devuelve los contadores de envio de comandos hacia los nodos. En caso de que
+	 * el sistema no este iniciado, todos los contadores valen 0.
+	 */
+	public synchronized SenderStatistics getSenderStatistics() {
+		return (running) ? sender.getStatistics() : new SenderStatistics(0, 0, 0, 0, 0, new TreeMap<>());
+	}
+
+	/**
+	 * Devuelve los contadores de recepcion de cada uno de los threads que leen los
+	 * paquetes enviados por los nodos. En caso de que el sistema no este
+	 * iniciado, no se incluye ningun thread.
+	 */
+	public synchronized ReceiverStatistics getReceiverStatistics() {
+		return (running) ? receiver.getStatistics() : new ReceiverStatistics(new ArrayList<ReceiverStatistics.ReactorStatistics>(), new TreeMap<Integer, Long>());
+	}
+
+	/**
+	 * Devuelve los contadores de la cola de eventos internos del MainController.
+	 * En caso de que el sistema no este iniciado, todos los contadores valen 0.
+	 */
+	public synchronized EventQueueStatistics getEventQueueStatistics() {
+		return (running) ? mainController.getQueueStatistics() : new EventQueueStatistics(0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Crea un TouchStream con la capacidad indicada, en el cual se publican todos
+	 * los Touche recibidos a partir de este momento, incluso luego de reiniciar
+	 * el sistema, hasta que se invoque closeTouchStream.
+	 */
+	public synchronized TouchStream openTouchStream(int capacity) {
+		if (capacity <= 0 || capacity > (1 << 26))
+			throw new IllegalArgumentException("La capacidad del TouchStream debe estar entre 1 y 2^26.");
+
+		TouchStream touchStream = new TouchStream(capacity);
+		touchStreams.add(touchStream);
+		if (running)
+			receiver.addTouchStream(touchStream);
+		return touchStream;
+	}
+
+	/**
+	 * Deja de publicar los Touche en el TouchStream indicado.
+	 */
+	public synchronized void closeTouchStream(TouchStream touchStream) {
+		if (touchStreams.remove(touchStream) && running)
+			receiver.removeTouchStream(touchStream);
+	}
+
+	/**
+	 * Devuelve las estadisticas del enlace con el nodo indicado, o null si el nodo
+	 * no se encuentra conectado.
+	 */
+	public synchronized LinkQuality getLinkQuality(int physicalId) {
+		return (running) ? keepAlive.getLinkQuality(physicalId) : null;
+	}
+
+	/**
+	 * Devuelve los contadores de reconexion de los nodos que perdieron la
+	 * conexion. Los contadores se acumulan entre sucesivos inicios del sistema.
+	 */
+	public synchronized ReconnectStatistics getReconnectStatistics() {
+		return new ReconnectStatistics(reconnections, failedReconnections, totalReconnectLatency, maxReconnectLatency);
+	}
+
 	/**
 	 * Inicia la busqueda de nuevos nodos conectados a la red.
 	 */
@@ -209,18 +341,202 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 		if (!running)
 			return;
 
-		if (messageFromExecutor || executor == null || !executor.contains(params.getPhysicialId()))
+		if (messageFromExecutor || executor == null || !executor.contains(params.getPhysicialId())) {
 			sender.command(QSYPacket.createCommandPacket(params));
+			recordCommand(params.getPhysicialId(), params.getColor(), params.getDelay(), params.getNumberOfStep());
+		}
+	}
+
+	/**
+	 * Programa el envio de un comando para el instante indicado, expresado en
+	 * milisegundos al igual que System.currentTimeMillis. Al momento del envio se
+	 * aplican las mismas reglas que en sendCommand. Los comandos que vencen en un
+	 * mismo instante se envian juntos.
+	 */
+	public synchronized void scheduleCommand(CommandArgs params, long at) {
+		if (!running)
+			return;
+
+		commandScheduler.schedule(QSYPacket.createCommandPacket(params), toNanoTime(at));
+	}
+
+	/**
+	 * Programa el envio de un conjunto de comandos para el instante indicado,
+	 * expresado en milisegundos al igual que System.currentTimeMillis. Si alguno
+	 * de los comandos es invalido, no se programa ninguno.
+	 */
+	public synchronized void scheduleCommands(Collection<CommandArgs> params, long at) {
+		if (!running)
+			return;
+
+		ArrayList<QSYPacket> packets = new ArrayList<>(params.size());
+		for (CommandArgs commandArgs : params)
+			packets.add(QSYPacket.createCommandPacket(commandArgs));
+
+		long deadline = toNanoTime(at);
+		for (QSYPacket packet : packets)
+			commandScheduler.schedule(packet, deadline);
+	}
+
+	private static long toNanoTime(long at) {
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(at - System.currentTimeMillis());
+	}
+
+	/**
+	 * Envia un comando con los parametros especificados a todos los nodos
+	 * conectados. Los nodos que aceptan comandos multicast lo reciben en un unico
+	 * datagrama, mientras que el resto lo recibe por TCP. En caso de que una rutina
+	 * se este ejecutando, los nodos involucrados en la misma no reciben el comando.
+	 * El protocolo de los nodos no define grupos, por lo que no es posible dirigir
+	 * un unico datagrama a un subconjunto de los nodos.
+	 */
+	public synchronized void sendBroadcastCommand(Color color, long delay, int numberOfStep) {
+		if (!running)
+			return;
+
+		CommandTemplate template = CommandTemplate.get(color, delay);
+		if (executor == null) {
+			broadcast(template, numberOfStep);
+		} else {
+			for (Integer physicalId : nodes.keySet()) {
+				if (!executor.contains(physicalId)) {
+					sender.command(template, physicalId, numberOfStep);
+					recordCommand(physicalId, template.getColor(), template.getDelay(), numberOfStep);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Envia un comando de una rutina a un conjunto de nodos. Si el conjunto
+	 * coincide con los nodos conectados y ningun nodo se esta reconectando, el
+	 * comando se envia por el grupo multicast.
+	 */
+	synchronized void sendCommand(CommandTemplate template, List<Integer> physicalIds, int numberOfStep) {
+		if (!running)
+			return;
+
+		if (coversAllNodes(physicalIds)) {
+			broadcast(template, numberOfStep);
+		} else {
+			for (Integer physicalId : physicalIds) {
+				sender.command(template, physicalId, numberOfStep);
+				recordCommand(physicalId, template.getColor(), template.getDelay(), numberOfStep);
+			}
+		}
+	}
+
+	/**
+	 * Devuelve true si los nodos indicados son exactamente los nodos conectados.
+	 * Mientras algun nodo se reconecta se devuelve false, ya que el nodo no figura
+	 * entre los conectados pero puede seguir involucrado en la rutina, y el
+	 * comando le seria registrado aunque no le corresponda.
+	 */
+	private boolean coversAllNodes(List<Integer> physicalIds) {
+		return reconnecting.isEmpty() && physicalIds.size() == nodes.size() && nodes.keySet().containsAll(physicalIds);
+	}
+
+	private void broadcast(CommandTemplate template, int numberOfStep) {
+		boolean multicast = false;
+		if (multicastNodes > 0) {
+			try {
+				multicastSender.broadcast(template, numberOfStep);
+				multicast = true;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// Un nodo con comandos pendientes en su cola de salida recibe el comando
+		// tambien por TCP, para que no quede con el color de un comando anterior que
+		// llegue despues del datagrama.
+		for (Node node : nodes.values()) {
+			if (!multicast || !node.supportsMulticastCommands() || sender.hasUnsentCommands(node.getPhysicalId()))
+				sender.command(template, node.getPhysicalId(), numberOfStep);
+			recordCommand(node.getPhysicalId(), template.getColor(), template.getDelay(), numberOfStep);
+		}
+		for (Integer physicalId : reconnecting.keySet())
+			recordCommand(physicalId, template.getColor(), template.getDelay(), numberOfStep);
+	}
+
+	/**
+	 * Registra el ultimo comando enviado a cada nodo, el cual se reenvia en caso
+	 * de que el nodo sea reconectado.
+	 */
+	private void recordCommand(int physicalId, Color color, long delay, int numberOfStep) {
+		lastColors[physicalId] = color;
+		lastDelays[physicalId] = delay;
+		lastSteps[physicalId] = numberOfStep;
+		lastCommandTimes[physicalId] = System.nanoTime();
+	}
+
+	/**
+	 * Reenvia el ultimo comando registrado para el nodo reconectado, con la parte
+	 * de su demora que aun no transcurrio.
+	 */
+	private void replayCommand(int physicalId) {
+		Color color = lastColors[physicalId];
+		if (color == null)
+			return;
+
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCommandTimes[physicalId]);
+		sender.command(CommandTemplate.get(color, Math.max(0, lastDelays[physicalId] - elapsed)), physicalId, lastSteps[physicalId]);
+	}
+
+	/**
+	 * Envia un comando de una rutina a partir de una plantilla pre-codificada. Solo
+	 * es utilizado por el Executor, por lo que el comando nunca es descartado.
+	 */
+	synchronized void sendCommand(CommandTemplate template, int physicalId, int numberOfStep) {
+		if (running) {
+			sender.command(template, physicalId, numberOfStep);
+			recordCommand(physicalId, template.getColor(), template.getDelay(), numberOfStep);
+		}
 	}
 
 	synchronized void visit(KeepAliveError event) throws Exception {
 		if (!running)
 			return;
 
+		for (int physicalId : event.getPhysicalIds()) {
+			Node node = nodes.get(physicalId);
+			if (node != null) {
+				if (configuration.getReconnectAttempts() > 0)
+					reconnectNode(node);
+				else
+					removeNode(node);
+			}
+		}
+	}
+
+	synchronized void visit(SenderOverflow event) throws Exception {
+		if (!running)
+			return;
+
 		Node node = nodes.get(event.getPhysicalId());
 		if (node != null)
 			removeNode(node);
+	}
+
+	synchronized void visit(ScheduledCommands event) {
+		if (!running)
+			return;
 
+		List<QSYPacket> packets = event.getPackets();
+		if (executor != null) {
+			ArrayList<QSYPacket> filteredPackets = new ArrayList<>(packets.size());
+			for (QSYPacket packet : packets) {
+				if (!executor.contains(packet.getPhysicalId()))
+					filteredPackets.add(packet);
+			}
+			packets = filteredPackets;
+		}
+
+		if (!packets.isEmpty()) {
+			sender.command(packets);
+			for (QSYPacket packet : packets)
+				recordCommand(packet.getPhysicalId(), packet.getColor(), packet.getDelay(), packet.getNumberOfStep());
+		}
 	}
 
 	synchronized void visit(IncomingPacket event) throws Exception {
@@ -228,28 +544,92 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 			return;
 
 		QSYPacket packet = event.getPacket();
-
-		switch (packet.getType()) {
-		case Hello:
+		if (packet.getType() == PacketType.Hello) {
 			int physicalId = packet.getPhysicalId();
-			if (!nodes.containsKey(physicalId))
-				createNode(packet);
-			break;
-		case Touche:
-			keepAlive.touche(packet.getPhysicalId());
-			if (executor != null)
-				executor.touche(packet.getPhysicalId(), packet.getNumberOfStep(), packet.getColor(), packet.getDelay());
-			eventSource.sendEvent(new ExternalEvent.Touche(new ToucheArgs(packet.getPhysicalId(), packet.getDelay(), packet.getColor())));
-			break;
-		case Keepalive:
-			keepAlive.keepAlive(packet.getPhysicalId());
-			break;
-		default:
-			break;
+			if (!nodes.containsKey(physicalId) && connecting.add(physicalId))
+				connector.connect(packet);
+		}
+	}
+
+	synchronized void visit(IncomingTouche event) {
+		if (!running)
+			return;
+
+		if (executor != null)
+			executor.touche(event.getPhysicalId(), event.getNumberOfStep(), event.getColor(), event.getDelay());
+		if (eventSource.hasListenersFor(EventFilter.TOUCHE, event.getPhysicalId()))
+			eventSource.sendEvent(new ExternalEvent.Touche(new ToucheArgs(event.getPhysicalId(), event.getDelay(), event.getColor())));
+	}
+
+	synchronized void visit(NodeConnected event) throws Exception {
+		QSYPacket packet = event.getHelloPacket();
+		if (!running || !connecting.remove(packet.getPhysicalId()) || nodes.containsKey(packet.getPhysicalId())) {
+			event.getSocketChannel().close();
+			return;
+		}
+
+		Reconnection reconnection = reconnecting.remove(packet.getPhysicalId());
+		if (reconnection == null) {
+			createNode(packet, event.getSocketChannel(), true);
+			return;
+		}
+
+		try {
+			createNode(packet, event.getSocketChannel(), false);
+		} catch (Exception e) {
+			failReconnection(reconnection);
+			throw e;
+		}
+
+		long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reconnection.startTime);
+		++reconnections;
+		totalReconnectLatency += latency;
+		maxReconnectLatency = Math.max(maxReconnectLatency, latency);
+		eventSource.sendEvent(new ExternalEvent.ReconnectedNode(packet.getPhysicalId(), packet.getNodeAddress(), latency));
+
+		replayCommand(packet.getPhysicalId());
+	}
+
+	synchronized void visit(NodeConnectionFailed event) {
+		if (!running)
+			return;
+
+		int physicalId = event.getHelloPacket().getPhysicalId();
+		if (!connecting.contains(physicalId))
+			return;
+
+		Reconnection reconnection = reconnecting.get(physicalId);
+		if (reconnection != null && ++reconnection.attempts < configuration.getReconnectAttempts()) {
+			connector.connect(reconnection.helloPacket, Math.min(RECONNECT_MAX_DELAY, RECONNECT_BASE_DELAY << (reconnection.attempts - 1)));
+			return;
+		}
+
+		connecting.remove(physicalId);
+		if (reconnection != null) {
+			reconnecting.remove(physicalId);
+			failReconnection(reconnection);
+		} else {
+			mutlticastReceiver.removeNode(physicalId);
+			if (nodeRegistry != null)
+				nodeRegistry.connectionFailed(physicalId);
 		}
 	}
 
 	synchronized void visit(CloseSignal event) {
+		try {
+			if (connector != null)
+				connector.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		try {
+			if (nodeRegistry != null)
+				nodeRegistry.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
 		try {
 			if (receiver != null)
 				receiver.close();
@@ -271,6 +651,13 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 			e.printStackTrace();
 		}
 
+		try {
+			if (commandScheduler != null)
+				commandScheduler.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
 		try {
 			if (mutlticastReceiver != null)
 				mutlticastReceiver.close();
@@ -278,6 +665,13 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 			e.printStackTrace();
 		}
 
+		try {
+			if (multicastSender != null)
+				multicastSender.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
 		try {
 			if (executor != null) {
 				executor.close();
@@ -289,7 +683,11 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 
 		executor = null;
 		mutlticastReceiver = null;
+		multicastSender = null;
 		keepAlive = null;
+		commandScheduler = null;
+		connector = null;
+		nodeRegistry = null;
 		receiver = null;
 		sender = null;
 
@@ -301,6 +699,10 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 			}
 		}
 		nodes.clear();
+		connecting.clear();
+		reconnecting.clear();
+		Arrays.fill(lastColors, null);
+		multicastNodes = 0;
 		eventSource.close();
 	}
 
@@ -325,15 +727,41 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 			eventSource.sendEvent(new ExternalEvent.StepTimeOut());
 	}
 
-	private void createNode(QSYPacket packet) throws Exception {
+	/**
+	 * Inicia la conexion hacia los nodos registrados en la ejecucion anterior, en
+	 * paralelo con la busqueda por multicast. Un error al leer el registro no
+	 * impide iniciar el sistema.
+	 */
+	private void connectKnownNodes() {
+		if (configuration.getNodeRegistryFile() == null)
+			return;
+
 		try {
-			Node node = new Node(packet);
+			nodeRegistry = new NodeRegistry(configuration.getNodeRegistryFile());
+			for (QSYPacket helloPacket : nodeRegistry.getKnownNodes()) {
+				if (connecting.add(helloPacket.getPhysicalId()))
+					connector.connect(helloPacket);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void createNode(QSYPacket packet, SocketChannel socketChannel, boolean notify) throws Exception {
+		try {
+			Node node = new Node(packet, socketChannel);
 			nodes.put(node.getPhysicalId(), node);
+			if (node.supportsMulticastCommands())
+				++multicastNodes;
 			keepAlive.newNode(node.getPhysicalId());
 			sender.newNode(node.getPhysicalId(), node.getNodeSocketChannel());
 			receiver.newNode(node.getPhysicalId(), node.getNodeSocketChannel());
-			eventSource.sendEvent(new ExternalEvent.ConnectedNode(node.getPhysicalId(), node.getNodeAddress()));
+			if (nodeRegistry != null)
+				nodeRegistry.add(node.getPhysicalId(), node.getNodeAddress(), packet.getFlags());
+			if (notify)
+				eventSource.sendEvent(new ExternalEvent.ConnectedNode(node.getPhysicalId(), node.getNodeAddress()));
 		} catch (Exception e) {
+			socketChannel.close();
 			mutlticastReceiver.removeNode(packet.getPhysicalId());
 			throw e;
 		}
@@ -341,27 +769,167 @@ public final class Terminal extends EventSourceI<ExternalEvent> implements AutoC
 
 	private void removeNode(Node node) throws Exception {
 		try {
-			if (executor != null && executor.contains(node.getPhysicalId())) {
-				executor.close();
-				executor = null;
-				eventSource.sendEvent(new ExternalEvent.ExecutionInterrupted(Reason.DisconnectedNode));
-			}
-			receiver.removeNode(node.getPhysicalId(), node.getNodeSocketChannel());
-			keepAlive.removeNode(node.getPhysicalId());
-			sender.removeNode(node.getPhysicalId());
+			interruptExecution(node.getPhysicalId());
+			detachNode(node);
 			mutlticastReceiver.removeNode(node.getPhysicalId());
-			nodes.remove(node.getPhysicalId());
-			node.close();
+			if (nodeRegistry != null)
+				nodeRegistry.remove(node.getPhysicalId());
+			lastColors[node.getPhysicalId()] = null;
 		} finally {
 			eventSource.sendEvent(new ExternalEvent.DisconnectedNode(node.getPhysicalId(), node.getNodeAddress()));
 		}
 	}
 
+	/**
+	 * Libera la conexion de un nodo que dejo de responder e intenta reconectarlo
+	 * utilizando su direccion conocida. Mientras tanto el nodo conserva su lugar
+	 * en la rutina en ejecucion, y los comandos dirigidos hacia el mismo se
+	 * registran para reenviar el ultimo al reconectarse.
+	 */
+	private void reconnectNode(Node node) throws Exception {
+		try {
+			detachNode(node);
+		} finally {
+			reconnecting.put(node.getPhysicalId(), new Reconnection(node.getHelloPacket(), System.nanoTime()));
+			connecting.add(node.getPhysicalId());
+			connector.connect(node.getHelloPacket());
+			eventSource.sendEvent(new ExternalEvent.ReconnectingNode(node.getPhysicalId(), node.getNodeAddress()));
+		}
+	}
+
+	/**
+	 * Desconecta del sistema a un nodo que no pudo ser reconectado.
+	 */
+	private void failReconnection(Reconnection reconnection) {
+		QSYPacket helloPacket = reconnection.helloPacket;
+		++failedReconnections;
+		try {
+			interruptExecution(helloPacket.getPhysicalId());
+			mutlticastReceiver.removeNode(helloPacket.getPhysicalId());
+			if (nodeRegistry != null)
+				nodeRegistry.remove(helloPacket.getPhysicalId());
+			lastColors[helloPacket.getPhysicalId()] = null;
+		} finally {
+			eventSource.sendEvent(new ExternalEvent.DisconnectedNode(helloPacket.getPhysicalId(), helloPacket.getNodeAddress()));
+		}
+	}
+
+	private void interruptExecution(int physicalId) {
+		if (executor != null && executor.contains(physicalId)) {
+			executor.close();
+			executor = null;
+			eventSource.sendEvent(new ExternalEvent.ExecutionInterrupted(Reason.DisconnectedNode));
+		}
+	}
+
+	private void detachNode(Node node) throws Exception {
+		receiver.removeNode(node.getPhysicalId(), node.getNodeSocketChannel());
+		keepAlive.removeNode(node.getPhysicalId());
+		sender.removeNode(node.getPhysicalId());
+		if (nodes.remove(node.getPhysicalId()) != null && node.supportsMulticastCommands())
+			--multicastNodes;
+		node.close();
+	}
+
+	private static final class Reconnection {
+
+		private final QSYPacket helloPacket;
+		private final long startTime;
+		private int attempts;
+
+		public Reconnection(QSYPacket helloPacket, long startTime) {
+			this.helloPacket = helloPacket;
+			this.startTime = startTime;
+			this.attempts = 0;
+		}
+
+	}
+
 	@Override
 	public void addListener(EventListener<ExternalEvent> eventListener) {
 		eventSource.addListener(eventListener);
 	}
 
+	/**
+	 * Agrega un listener que solo recibe los eventos aceptados por el filtro
+	 * indicado. El filtro se copia, por lo que modificarlo luego no tiene efecto.
+	 */
+	public void addListener(EventListener<ExternalEvent> eventListener, EventFilter filter) {
+		if (filter == null)
+			throw new IllegalArgumentException("El filtro debe ser valido.");
+		eventSource.addListener(eventListener, filter);
+	}
+
+	/**
+	 * Registra una funcion que recibe los eventos desde el Executor compartido de
+	 * la configuracion, sin necesidad de un thread dedicado. Los eventos se
+	 * entregan de a uno y en orden. Devuelve el CallbackListener creado, el cual
+	 * debe utilizarse para quitar la funcion mediante removeListener.
+	 */
+	public CallbackListener<ExternalEvent> addListener(Consumer<? super ExternalEvent> callback) {
+		return registerCallback(callback, null);
+	}
+
+	/**
+	 * Registra una funcion que solo recibe los eventos aceptados por el filtro
+	 * indicado.
+	 */
+	public CallbackListener<ExternalEvent> addListener(Consumer<? super ExternalEvent> callback, EventFilter filter) {
+		if (filter == null)
+			throw new IllegalArgumentException("El filtro debe ser valido.");
+		return registerCallback(callback, filter);
+	}
+
+	/**
+	 * Registra un ExternalEventVisitor que recibe los eventos desde el Executor
+	 * compartido de la configuracion, de la misma forma que una funcion.
+	 */
+	public CallbackListener<ExternalEvent> addVisitor(ExternalEventVisitor visitor) {
+		if (visitor == null)
+			throw new IllegalArgumentException("El visitor debe ser valido.");
+		return registerCallback(event -> event.accept(visitor), null);
+	}
+
+	/**
+	 * Registra un ExternalEventVisitor que solo recibe los eventos aceptados por
+	 * el filtro indicado.
+	 */
+	public CallbackListener<ExternalEvent> addVisitor(ExternalEventVisitor visitor, EventFilter filter) {
+		if (visitor == null)
+			throw new IllegalArgumentException("El visitor debe ser valido.");
+		if (filter == null)
+			throw new IllegalArgumentException("El filtro debe ser valido.");
+		return registerCallback(event -> event.accept(visitor), filter);
+	}
+
+	private CallbackListener<ExternalEvent> registerCallback(Consumer<? super ExternalEvent> callback, EventFilter filter) {
+		if (callback == null)
+			throw new IllegalArgumentException("La funcion debe ser valida.");
+		CallbackListener<ExternalEvent> callbackListener = new CallbackListener<>(callback, configuration.getCallbackExecutor());
+		eventSource.addListener(callbackListener, filter);
+		return callbackListener;
+	}
+
+	/**
+	 * Agrega un EventSink que recibe los eventos aceptados por el filtro
+	 * indicado, o todos los eventos si el filtro es null.
+	 */
+	void addSink(EventSink<ExternalEvent> eventSink, EventFilter filter) {
+		eventSource.addListener(eventSink, filter);
+	}
+
+	void removeSink(EventSink<ExternalEvent> eventSink) {
+		eventSource.removeListener(eventSink);
+	}
+
+	/**
+	 * Quita una funcion o ExternalEventVisitor registrado previamente. Los eventos
+	 * ya recibidos se siguen entregando.
+	 */
+	public void removeListener(CallbackListener<ExternalEvent> callbackListener) {
+		eventSource.removeListener(callbackListener);
+	}
+
 	@Override
 	public void removeListener(EventListener<ExternalEvent> eventListener) {
 		eventSource.removeListener(eventListener);
@@ -0,0 +1,294 @@
+package terminal;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * La clase TerminalConfiguration agrupa los parametros opcionales de la
+ * Terminal. Los valores se leen al construir la Terminal, por lo que modificar
+ * una configuracion ya utilizada no tiene efecto sobre la misma.
+ */
+public final class TerminalConfiguration {
+
+	/**
+	 * Politica a aplicar cuando la cola de salida de un nodo se encuentra llena.
+	 */
+	public static enum SenderOverflowPolicy {
+		/**
+		 * Se descarta el comando mas antiguo que aun no comenzo a enviarse.
+		 */
+		DropOldest,
+		/**
+		 * Se descarta el comando nuevo.
+		 */
+		DropNewest,
+		/**
+		 * Se descartan los comandos pendientes y se desconecta el nodo.
+		 */
+		Disconnect
+	}
+
+	/**
+	 * Forma en la que el MainController espera la llegada de eventos cuando su
+	 * cola es de capacidad fija.
+	 */
+	public static enum WaitStrategy {
+		/**
+		 * El thread se bloquea hasta que se deposite un evento.
+		 */
+		Blocking,
+		/**
+		 * El thread reintenta activamente durante un breve lapso y luego se bloquea.
+		 */
+		SpinThenPark,
+		/**
+		 * El thread cede el procesador entre reintentos y nunca se bloquea.
+		 */
+		Yielding
+	}
+
+	private String nodeRegistryFile;
+	private int maxConcurrentConnects;
+	private int connectTimeout;
+	private double failureDetectorThreshold;
+	private int acceptableKeepAlivePause;
+	private int reconnectAttempts;
+	private int receiverThreads;
+	private int senderThreads;
+	private int senderQueueCapacity;
+	private SenderOverflowPolicy senderOverflowPolicy;
+	private int controllerQueueCapacity;
+	private WaitStrategy controllerWaitStrategy;
+	private Executor callbackExecutor;
+
+	public TerminalConfiguration() {
+		this.nodeRegistryFile = null;
+		this.maxConcurrentConnects = 64;
+		this.connectTimeout = 3000;
+		this.failureDetectorThreshold = 8;
+		this.acceptableKeepAlivePause = 4600;
+		this.reconnectAttempts = 0;
+		this.receiverThreads = 1;
+		this.senderThreads = 1;
+		this.senderQueueCapacity = 64;
+		this.senderOverflowPolicy = SenderOverflowPolicy.DropOldest;
+		this.controllerQueueCapacity = 0;
+		this.controllerWaitStrategy = WaitStrategy.Blocking;
+		this.callbackExecutor = ForkJoinPool.commonPool();
+	}
+
+	TerminalConfiguration(TerminalConfiguration configuration) {
+		this.nodeRegistryFile = configuration.nodeRegistryFile;
+		this.maxConcurrentConnects = configuration.maxConcurrentConnects;
+		this.connectTimeout = configuration.connectTimeout;
+		this.failureDetectorThreshold = configuration.failureDetectorThreshold;
+		this.acceptableKeepAlivePause = configuration.acceptableKeepAlivePause;
+		this.reconnectAttempts = configuration.reconnectAttempts;
+		this.receiverThreads = configuration.receiverThreads;
+		this.senderThreads = configuration.senderThreads;
+		this.senderQueueCapacity = configuration.senderQueueCapacity;
+		this.senderOverflowPolicy = configuration.senderOverflowPolicy;
+		this.controllerQueueCapacity = configuration.controllerQueueCapacity;
+		this.controllerWaitStrategy = configuration.controllerWaitStrategy;
+		this.callbackExecutor = configuration.callbackExecutor;
+	}
+
+	public String getNodeRegistryFile() {
+		return nodeRegistryFile;
+	}
+
+	/**
+	 * Establece el archivo en el que se registran los nodos conectados. Al iniciar
+	 * la Terminal se intenta reconectar directamente a los nodos registrados, sin
+	 * esperar sus QSYHelloPackets. Por defecto es null, en cuyo caso no se
+	 * utiliza ningun registro.
+	 */
+	public void setNodeRegistryFile(String nodeRegistryFile) {
+		if (nodeRegistryFile != null && nodeRegistryFile.isEmpty())
+			throw new IllegalArgumentException("El archivo de registro de nodos debe ser valido.");
+		this.nodeRegistryFile = nodeRegistryFile;
+	}
+
+	public int getMaxConcurrentConnects() {
+		return maxConcurrentConnects;
+	}
+
+	/**
+	 * Establece la cantidad maxima de conexiones hacia nodos descubiertos que
+	 * pueden encontrarse en curso al mismo tiempo. Las restantes esperan a que
+	 * alguna de ellas finalice.
+	 */
+	public void setMaxConcurrentConnects(int maxConcurrentConnects) {
+		if (maxConcurrentConnects <= 0)
+			throw new IllegalArgumentException("La cantidad de conexiones simultaneas debe ser mayor a 0.");
+		this.maxConcurrentConnects = maxConcurrentConnects;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Establece el tiempo maximo, en milisegundos, que puede demorar cada intento
+	 * de conexion hacia un nodo.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		if (connectTimeout <= 0)
+			throw new IllegalArgumentException("El tiempo maximo de conexion debe ser mayor a 0.");
+		this.connectTimeout = connectTimeout;
+	}
+
+	public double getFailureDetectorThreshold() {
+		return failureDetectorThreshold;
+	}
+
+	/**
+	 * Establece el nivel de sospecha phi a partir del cual un nodo se considera
+	 * desconectado. Un valor de 1 equivale a aceptar un 10% de error, 2 un 1%, y
+	 * asi sucesivamente. Valores mayores detectan las fallas mas tarde pero con
+	 * menos falsos positivos.
+	 */
+	public void setFailureDetectorThreshold(double failureDetectorThreshold) {
+		if (!(failureDetectorThreshold > 0))
+			throw new IllegalArgumentException("El umbral de sospecha debe ser mayor a 0.");
+		this.failureDetectorThreshold = failureDetectorThreshold;
+	}
+
+	public int getAcceptableKeepAlivePause() {
+		return acceptableKeepAlivePause;
+	}
+
+	/**
+	 * Establece la demora, en milisegundos, que se tolera por encima del intervalo
+	 * habitual entre Keepalive de cada nodo antes de comenzar a sospechar del
+	 * mismo. Por defecto es 4600, con lo cual, junto con el umbral por defecto, un
+	 * nodo con un enlace estable se detecta aproximadamente 5.6 segundos despues
+	 * de su ultimo paquete, al igual que en las versiones anteriores. Valores
+	 * menores detectan las fallas antes.
+	 */
+	public void setAcceptableKeepAlivePause(int acceptableKeepAlivePause) {
+		if (acceptableKeepAlivePause < 0)
+			throw new IllegalArgumentException("La demora tolerada no puede ser negativa.");
+		this.acceptableKeepAlivePause = acceptableKeepAlivePause;
+	}
+
+	public int getReconnectAttempts() {
+		return reconnectAttempts;
+	}
+
+	/**
+	 * Establece la cantidad maxima de intentos para reconectar un nodo que dejo de
+	 * responder, antes de desconectarlo del sistema. Los intentos se realizan con
+	 * una espera creciente entre los mismos. Por defecto es 0, en cuyo caso los
+	 * nodos se desconectan sin intentar reconectarlos, al igual que en las
+	 * versiones anteriores.
+	 */
+	public void setReconnectAttempts(int reconnectAttempts) {
+		if (reconnectAttempts < 0)
+			throw new IllegalArgumentException("La cantidad de intentos de reconexion no puede ser negativa.");
+		this.reconnectAttempts = reconnectAttempts;
+	}
+
+	public int getReceiverThreads() {
+		return receiverThreads;
+	}
+
+	/**
+	 * Establece la cantidad de threads utilizados para leer los paquetes enviados
+	 * por los nodos. Cada conexion nueva se asigna al thread que menos conexiones
+	 * atiende en ese momento.
+	 */
+	public void setReceiverThreads(int receiverThreads) {
+		if (receiverThreads <= 0)
+			throw new IllegalArgumentException("La cantidad de threads de recepcion debe ser mayor a 0.");
+		this.receiverThreads = receiverThreads;
+	}
+
+	public int getSenderThreads() {
+		return senderThreads;
+	}
+
+	/**
+	 * Establece la cantidad de threads utilizados para enviar comandos. Los nodos
+	 * se reparten entre los mismos segun su id fisico, por lo que los comandos de
+	 * un mismo nodo siempre se envian en orden.
+	 */
+	public void setSenderThreads(int senderThreads) {
+		if (senderThreads <= 0)
+			throw new IllegalArgumentException("La cantidad de threads de envio debe ser mayor a 0.");
+		this.senderThreads = senderThreads;
+	}
+
+	public int getSenderQueueCapacity() {
+		return senderQueueCapacity;
+	}
+
+	/**
+	 * Establece la cantidad maxima de comandos que pueden quedar pendientes de
+	 * envio para cada nodo.
+	 */
+	public void setSenderQueueCapacity(int senderQueueCapacity) {
+		if (senderQueueCapacity <= 0)
+			throw new IllegalArgumentException("La capacidad de la cola de salida debe ser mayor a 0.");
+		this.senderQueueCapacity = senderQueueCapacity;
+	}
+
+	public SenderOverflowPolicy getSenderOverflowPolicy() {
+		return senderOverflowPolicy;
+	}
+
+	/**
+	 * Establece la politica a aplicar cuando la cola de salida de un nodo se
+	 * encuentra llena.
+	 */
+	public void setSenderOverflowPolicy(SenderOverflowPolicy senderOverflowPolicy) {
+		if (senderOverflowPolicy == null)
+			throw new IllegalArgumentException("La politica de desborde debe ser valida.");
+		this.senderOverflowPolicy = senderOverflowPolicy;
+	}
+
+	public int getControllerQueueCapacity() {
+		return controllerQueueCapacity;
+	}
+
+	/**
+	 * Establece la capacidad de la cola de eventos del MainController. Con una
+	 * capacidad mayor a 0 la cola se preasigna, redondeando la capacidad a la
+	 * proxima potencia de 2, y los productores esperan cuando se encuentra llena.
+	 * Con 0 la cola no posee limite.
+	 */
+	public void setControllerQueueCapacity(int controllerQueueCapacity) {
+		if (controllerQueueCapacity < 0 || controllerQueueCapacity > (1 << 30))
+			throw new IllegalArgumentException("La capacidad de la cola del MainController debe estar entre 0 y 2^30.");
+		this.controllerQueueCapacity = controllerQueueCapacity;
+	}
+
+	public WaitStrategy getControllerWaitStrategy() {
+		return controllerWaitStrategy;
+	}
+
+	/**
+	 * Establece la forma en la que el MainController espera eventos cuando su cola
+	 * es de capacidad fija.
+	 */
+	public void setControllerWaitStrategy(WaitStrategy controllerWaitStrategy) {
+		if (controllerWaitStrategy == null)
+			throw new IllegalArgumentException("La estrategia de espera debe ser valida.");
+		this.controllerWaitStrategy = controllerWaitStrategy;
+	}
+
+	public Executor getCallbackExecutor() {
+		return callbackExecutor;
+	}
+
+	/**
+	 * Establece el Executor desde el cual se invocan los listeners registrados
+	 * como funciones. Por defecto se utiliza ForkJoinPool.commonPool().
+	 */
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		if (callbackExecutor == null)
+			throw new IllegalArgumentException("El executor de los listeners debe ser valido.");
+		this.callbackExecutor = callbackExecutor;
+	}
+
+}
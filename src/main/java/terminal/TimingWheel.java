@@ -0,0 +1,129 @@
+package terminal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * La clase TimingWheel implementa una rueda de tiempo hasheada. Los elementos
+ * se agendan con un deadline en nanosegundos y se recuperan al avanzar la
+ * rueda, con un costo proporcional a la cantidad de elementos vencidos y no a
+ * la cantidad de elementos pendientes. Los metodos schedule y hasPendingEntries
+ * son ThreadSafe, mientras que advance y nextTick solo deben invocarse desde un
+ * unico thread.
+ */
+final class TimingWheel<T> {
+
+	private final long tickNanos;
+	private final int mask;
+	private final ArrayList<ArrayList<Entry<T>>> buckets;
+	private final ConcurrentLinkedQueue<Entry<T>> pendingEntries;
+
+	private long lastTick;
+
+	public TimingWheel(long tickNanos, int wheelSize, long startNanos) {
+		if (Integer.bitCount(wheelSize) != 1)
+			throw new IllegalArgumentException("La cantidad de posiciones de la rueda debe ser una potencia de 2.");
+
+		this.tickNanos = tickNanos;
+		this.mask = wheelSize - 1;
+		this.buckets = new ArrayList<>(wheelSize);
+		for (int i = 0; i < wheelSize; i++)
+			buckets.add(new ArrayList<>());
+		this.pendingEntries = new ConcurrentLinkedQueue<>();
+		this.lastTick = startNanos / tickNanos;
+	}
+
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	public void schedule(T element, long deadlineNanos) {
+		pendingEntries.add(new Entry<>(element, deadlineNanos / tickNanos));
+	}
+
+	/**
+	 * Avanza la rueda hasta el instante indicado y agrega en expired los elementos
+	 * cuyo deadline ya vencio. Devuelve la cantidad de elementos vencidos.
+	 */
+	public int advance(long nowNanos, Collection<? super T> expired) {
+		long nowTick = nowNanos / tickNanos;
+		drainPendingEntries();
+
+		int count = 0;
+		long ticks = Math.min(nowTick - lastTick, mask + 1);
+		for (long i = 1; i <= ticks; i++) {
+			ArrayList<Entry<T>> bucket = buckets.get((int) ((lastTick + i) & mask));
+			int size = bucket.size();
+			int kept = 0;
+			for (int j = 0; j < size; j++) {
+				Entry<T> current = bucket.get(j);
+				if (current.deadlineTick <= nowTick) {
+					expired.add(current.element);
+					++count;
+				} else {
+					bucket.set(kept++, current);
+				}
+			}
+			for (int j = size - 1; j >= kept; j--)
+				bucket.remove(j);
+		}
+
+		if (nowTick > lastTick)
+			lastTick = nowTick;
+		return count;
+	}
+
+	/**
+	 * Devuelve el tick en el que vence el proximo elemento de la rueda, o
+	 * Long.MAX_VALUE si la rueda esta vacia. Las posiciones se recorren en orden a
+	 * partir del ultimo avance, por lo que solo se revisan los elementos hasta la
+	 * primera posicion que contiene un elemento que vence en esa vuelta.
+	 */
+	public long nextTick() {
+		drainPendingEntries();
+
+		long next = Long.MAX_VALUE;
+		for (int i = 1; i <= mask + 1; i++) {
+			long tick = lastTick + i;
+			ArrayList<Entry<T>> bucket = buckets.get((int) (tick & mask));
+			for (int j = 0; j < bucket.size(); j++) {
+				long deadlineTick = Math.max(bucket.get(j).deadlineTick, tick);
+				if (deadlineTick == tick)
+					return tick;
+				if (deadlineTick < next)
+					next = deadlineTick;
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Devuelve true si existen elementos agendados que aun no fueron ubicados en la
+	 * rueda.
+	 */
+	public boolean hasPendingEntries() {
+		return !pendingEntries.isEmpty();
+	}
+
+	private void drainPendingEntries() {
+		Entry<T> entry;
+		while ((entry = pendingEntries.poll()) != null) {
+			long tick = Math.max(entry.deadlineTick, lastTick + 1);
+			buckets.get((int) (tick & mask)).add(entry);
+		}
+	}
+
+	private static final class Entry<T> {
+
+		private final T element;
+		private final long deadlineTick;
+
+		public Entry(T element, long deadlineTick) {
+			this.element = element;
+			this.deadlineTick = deadlineTick;
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+package terminal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * La clase TouchStream publica los Touche recibidos como valores primitivos en
+ * un arreglo circular preasignado, sin crear objetos por cada Touche. Los
+ * Touche se publican directamente desde los threads que leen los paquetes de
+ * los nodos, y un unico consumidor los retira en lotes mediante poll. Los
+ * productores nunca esperan: si el arreglo se encuentra lleno, el Touche se
+ * descarta y se contabiliza. Los eventos ExternalEvent.Touche se siguen
+ * enviando normalmente a los EventListeners.
+ */
+public final class TouchStream {
+
+	/**
+	 * Cantidad de posiciones del arreglo que ocupa cada Touche.
+	 */
+	private static final int STRIDE = 4;
+
+	/**
+	 * La interfaz TouchHandler recibe los Touche retirados de un TouchStream.
+	 */
+	public static interface TouchHandler {
+
+		/**
+		 * Atiende un Touche. El indice de color corresponde al utilizado por
+		 * Color.ColorFactory.createColor(int) y el instante es el valor de
+		 * System.nanoTime() al momento de recibir el paquete.
+		 */
+		public void touche(int physicalId, int numberOfStep, int colorIndex, long delay, long timestamp);
+
+	}
+
+	private final long[] touches;
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	private final AtomicLong tail;
+	private volatile long head;
+
+	private final AtomicLong droppedTouches;
+
+	/**
+	 * Crea el TouchStream con la menor potencia de 2 mayor o igual a la capacidad
+	 * indicada.
+	 */
+	TouchStream(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.touches = new long[size * STRIDE];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+		this.mask = size - 1;
+
+		this.tail = new AtomicLong(0);
+		this.head = 0;
+		this.droppedTouches = new AtomicLong(0);
+	}
+
+	/**
+	 * Publica un Touche. Devuelve false si el arreglo se encuentra lleno, en cuyo
+	 * caso el Touche se descarta.
+	 */
+	boolean publish(int physicalId, int numberOfStep, int colorIndex, long delay, long timestamp) {
+		long sequence;
+		int index;
+		while (true) {
+			sequence = tail.get();
+			index = (int) sequence & mask;
+			long available = sequences.get(index);
+			if (available == sequence) {
+				if (tail.compareAndSet(sequence, sequence + 1))
+					break;
+			} else if (available < sequence) {
+				droppedTouches.incrementAndGet();
+				return false;
+			}
+		}
+
+		int offset = index * STRIDE;
+		touches[offset] = physicalId;
+		touches[offset + 1] = ((long) numberOfStep << 8) | colorIndex;
+		touches[offset + 2] = delay;
+		touches[offset + 3] = timestamp;
+		sequences.lazySet(index, sequence + 1);
+		return true;
+	}
+
+	/**
+	 * Retira hasta maxTouches Touche pendientes, en el orden en que fueron
+	 * publicados, y los entrega al TouchHandler indicado. No espera si no existe
+	 * ninguno. Devuelve la cantidad de Touche retirados. Solo puede ser invocado
+	 * desde un unico thread a la vez.
+	 */
+	public int poll(TouchHandler handler, int maxTouches) {
+		long sequence = head;
+		int polled = 0;
+		while (polled < maxTouches) {
+			int index = (int) sequence & mask;
+			if (sequences.get(index) != sequence + 1)
+				break;
+
+			int offset = index * STRIDE;
+			int physicalId = (int) touches[offset];
+			long stepAndColor = touches[offset + 1];
+			long delay = touches[offset + 2];
+			long timestamp = touches[offset + 3];
+			sequences.lazySet(index, sequence + touches.length / STRIDE);
+			head = ++sequence;
+			++polled;
+
+			handler.touche(physicalId, (int) (stepAndColor >>> 8), (int) stepAndColor & 0xFF, delay, timestamp);
+		}
+		return polled;
+	}
+
+	/**
+	 * Devuelve la capacidad del TouchStream.
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Devuelve la cantidad de Touche pendientes de ser retirados.
+	 */
+	public int getPendingTouches() {
+		return (int) Math.max(0, tail.get() - head);
+	}
+
+	/**
+	 * Devuelve la cantidad de Touche descartados por encontrarse lleno el
+	 * arreglo.
+	 */
+	public long getDroppedTouches() {
+		return droppedTouches.get();
+	}
+
+}
@@ -0,0 +1,224 @@
+package terminal;
+
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import terminal.Event.ExternalEvent;
+import terminal.EventListener.OverflowPolicy;
+
+/**
+ * La clase ExternalEventPublisher expone los eventos de una Terminal como un
+ * Flow.Publisher. Cada suscriptor posee su propio buffer de capacidad fija, y
+ * los eventos solo se entregan a medida que el suscriptor los solicita. La
+ * entrega no utiliza threads propios: los eventos se entregan desde el thread
+ * que genera el evento o desde el que invoca request, nunca desde dos threads
+ * al mismo tiempo para un mismo suscriptor. Cuando un buffer se llena se
+ * aplica la politica de desborde indicada. Requiere Java 9, por lo que solo se
+ * incluye en el jar con clasificador java9, generado al compilar con -Pjava9.
+ */
+public final class ExternalEventPublisher implements Flow.Publisher<ExternalEvent>, AutoCloseable {
+
+	private static final int MAX_BATCH_SIZE = 64;
+
+	private final Terminal terminal;
+	private final int bufferSize;
+	private final OverflowPolicy overflowPolicy;
+	private final EventFilter filter;
+	private final CopyOnWriteArrayList<EventSubscription> subscriptions;
+
+	private volatile boolean closed;
+
+	public ExternalEventPublisher(Terminal terminal, int bufferSize, OverflowPolicy overflowPolicy) {
+		this(terminal, bufferSize, overflowPolicy, null);
+	}
+
+	/**
+	 * Crea un publicador cuyos suscriptores solo reciben los eventos aceptados
+	 * por el filtro indicado. El filtro se copia al suscribirse cada suscriptor.
+	 */
+	public ExternalEventPublisher(Terminal terminal, int bufferSize, OverflowPolicy overflowPolicy, EventFilter filter) {
+		if (terminal == null)
+			throw new IllegalArgumentException("La terminal debe ser valida.");
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("La capacidad del buffer debe ser mayor a 0.");
+		if (overflowPolicy == null || overflowPolicy == OverflowPolicy.Block)
+			throw new IllegalArgumentException("La politica de desborde debe descartar o combinar eventos.");
+
+		this.terminal = terminal;
+		this.bufferSize = bufferSize;
+		this.overflowPolicy = overflowPolicy;
+		this.filter = (filter == null) ? null : new EventFilter(filter);
+		this.subscriptions = new CopyOnWriteArrayList<>();
+		this.closed = false;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ExternalEvent> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("El suscriptor debe ser valido.");
+
+		EventSubscription subscription = new EventSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		if (closed) {
+			subscription.complete();
+			return;
+		}
+
+		subscriptions.add(subscription);
+		subscription.attach();
+	}
+
+	/**
+	 * Finaliza todas las suscripciones. Los eventos pendientes se siguen
+	 * entregando a medida que se solicitan, y luego se invoca onComplete.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			for (EventSubscription subscription : subscriptions)
+				subscription.complete();
+			subscriptions.clear();
+		}
+	}
+
+	/**
+	 * Cada suscripcion se registra en la Terminal como un EventSink que deposita
+	 * el evento en el buffer del suscriptor y luego intenta entregarlo. La entrega
+	 * y las senales de finalizacion se serializan mediante un contador de trabajo
+	 * pendiente, por lo que solo un thread a la vez invoca al suscriptor.
+	 */
+	private final class EventSubscription implements Flow.Subscription, EventSink<ExternalEvent> {
+
+		private final Flow.Subscriber<? super ExternalEvent> subscriber;
+		private final BoundedEventQueue<ExternalEvent> buffer;
+		private final ArrayList<ExternalEvent> batch;
+
+		private final AtomicLong requested;
+		private final AtomicInteger pendingWork;
+
+		private volatile boolean cancelled;
+		private volatile boolean completed;
+		private volatile Throwable error;
+		private boolean terminated;
+
+		public EventSubscription(Flow.Subscriber<? super ExternalEvent> subscriber) {
+			this.subscriber = subscriber;
+			this.buffer = new BoundedEventQueue<>(bufferSize, overflowPolicy);
+			this.batch = new ArrayList<>(Math.min(bufferSize, MAX_BATCH_SIZE));
+
+			this.requested = new AtomicLong(0);
+			this.pendingWork = new AtomicInteger(0);
+			this.cancelled = false;
+			this.completed = false;
+			this.error = null;
+			this.terminated = false;
+		}
+
+		@Override
+		public void receiveEvent(ExternalEvent event) {
+			if (!cancelled && !completed && error == null) {
+				buffer.add(event);
+				deliver();
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				fail(new IllegalArgumentException("La cantidad de eventos solicitados debe ser mayor a 0."));
+				return;
+			}
+
+			long current;
+			do {
+				current = requested.get();
+				if (current == Long.MAX_VALUE)
+					break;
+			} while (!requested.compareAndSet(current, (current + n < 0) ? Long.MAX_VALUE : current + n));
+			deliver();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			detach();
+		}
+
+		public void attach() {
+			terminal.addSink(this, filter);
+			if (cancelled || error != null)
+				detach();
+		}
+
+		public void complete() {
+			completed = true;
+			detach();
+			deliver();
+		}
+
+		/**
+		 * Finaliza la suscripcion con el error indicado, el cual se informa al
+		 * suscriptor desde el ciclo de entrega.
+		 */
+		private void fail(Throwable e) {
+			if (error == null)
+				error = e;
+			detach();
+			deliver();
+		}
+
+		private void detach() {
+			terminal.removeSink(this);
+			subscriptions.remove(this);
+		}
+
+		private void deliver() {
+			if (pendingWork.getAndIncrement() != 0)
+				return;
+
+			int missed = 1;
+			do {
+				if (!terminated) {
+					long demand = requested.get();
+					long emitted = 0;
+					while (emitted < demand && !cancelled && error == null) {
+						buffer.drainTo(batch, (int) Math.min(demand - emitted, MAX_BATCH_SIZE));
+						if (batch.isEmpty())
+							break;
+						for (int i = 0; i < batch.size() && !cancelled; i++) {
+							try {
+								subscriber.onNext(batch.get(i));
+								++emitted;
+							} catch (Throwable e) {
+								if (error == null)
+									error = e;
+								detach();
+								break;
+							}
+						}
+						batch.clear();
+					}
+					if (emitted > 0 && demand != Long.MAX_VALUE)
+						requested.addAndGet(-emitted);
+
+					if (cancelled) {
+						terminated = true;
+					} else if (error != null) {
+						terminated = true;
+						subscriber.onError(error);
+					} else if (completed && buffer.getStatistics().getDepth() == 0) {
+						terminated = true;
+						subscriber.onComplete();
+					}
+				}
+				missed = pendingWork.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+	}
+
+}
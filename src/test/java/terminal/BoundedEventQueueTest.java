@@ -0,0 +1,124 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import terminal.Event.ExternalEvent;
+import terminal.Event.ExternalEvent.ExecutionStarted;
+import terminal.Event.ExternalEvent.Touche;
+import terminal.EventListener.OverflowPolicy;
+import terminal.QSYPacket.ToucheArgs;
+
+public final class BoundedEventQueueTest {
+
+	@Test
+	public void dropNewestKeepsQueuedEvents() throws InterruptedException {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(2, OverflowPolicy.DropNewest);
+		ExternalEvent first = touche(1);
+		ExternalEvent second = touche(2);
+		queue.add(first);
+		queue.add(second);
+		queue.add(touche(3));
+
+		assertSame(first, queue.take());
+		assertSame(second, queue.take());
+		assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+		assertEquals(1, queue.getStatistics().getDroppedEvents());
+		assertTrue(queue.hasFallenBehind());
+		queue.clearFallenBehind();
+		assertFalse(queue.hasFallenBehind());
+	}
+
+	@Test
+	public void dropOldestKeepsLatestEvents() throws InterruptedException {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(2, OverflowPolicy.DropOldest);
+		ExternalEvent second = touche(2);
+		ExternalEvent third = touche(3);
+		queue.add(touche(1));
+		queue.add(second);
+		queue.add(third);
+
+		assertSame(second, queue.take());
+		assertSame(third, queue.take());
+		assertEquals(1, queue.getStatistics().getDroppedEvents());
+		assertEquals(2, queue.getStatistics().getMaxDepth());
+	}
+
+	@Test
+	public void coalesceReplacesPendingEventOfSameNode() throws InterruptedException {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(2, OverflowPolicy.Coalesce);
+		ExternalEvent other = touche(2);
+		ExternalEvent latest = touche(1);
+		queue.add(touche(1));
+		queue.add(other);
+		queue.add(touche(1));
+		queue.add(latest);
+
+		assertSame(latest, queue.take());
+		assertSame(other, queue.take());
+		assertEquals(2, queue.getStatistics().getCoalescedEvents());
+		assertEquals(0, queue.getStatistics().getDroppedEvents());
+	}
+
+	@Test
+	public void coalesceDropsOldestWithoutPendingMatch() throws InterruptedException {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(2, OverflowPolicy.Coalesce);
+		ExternalEvent started = new ExecutionStarted();
+		queue.add(touche(1));
+		queue.add(touche(2));
+		queue.add(started);
+
+		ArrayList<ExternalEvent> events = new ArrayList<>();
+		assertEquals(2, queue.drainTo(events, 8));
+		assertEquals(2, ((Touche) events.get(0)).getToucheArgs().getPhysicalId());
+		assertSame(started, events.get(1));
+		assertEquals(1, queue.getStatistics().getDroppedEvents());
+
+		queue.add(touche(2));
+		assertEquals(2, ((Touche) queue.take()).getToucheArgs().getPhysicalId());
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws InterruptedException {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(1, OverflowPolicy.Block);
+		ExternalEvent first = touche(1);
+		ExternalEvent second = touche(2);
+		queue.add(first);
+		Thread producer = new Thread(() -> queue.add(second));
+		producer.start();
+		Thread.sleep(50);
+		assertTrue(producer.isAlive());
+
+		assertSame(first, queue.take());
+		assertSame(second, queue.poll(5, TimeUnit.SECONDS));
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		assertEquals(1, queue.getStatistics().getProducerStalls());
+		assertEquals(0, queue.getStatistics().getDroppedEvents());
+	}
+
+	@Test
+	public void drainRespectsMaximum() {
+		BoundedEventQueue<ExternalEvent> queue = new BoundedEventQueue<>(8, OverflowPolicy.DropOldest);
+		for (int i = 0; i < 5; i++)
+			queue.add(touche(i));
+		ArrayList<ExternalEvent> events = new ArrayList<>();
+		assertEquals(3, queue.drainTo(events, 3));
+		assertEquals(2, queue.getStatistics().getDepth());
+		assertEquals(2, queue.drainTo(events, 8));
+		assertEquals(0, queue.drainTo(events, 8));
+	}
+
+	private static ExternalEvent touche(int physicalId) {
+		return new Touche(new ToucheArgs(physicalId, 0, Color.RED));
+	}
+
+}
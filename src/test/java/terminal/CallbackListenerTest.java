@@ -0,0 +1,62 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import terminal.Event.ExternalEvent;
+import terminal.Event.ExternalEvent.Touche;
+import terminal.QSYPacket.ToucheArgs;
+
+public final class CallbackListenerTest {
+
+	@Test
+	public void deliversEventsInOrder() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Integer> received = new ArrayList<>();
+		CallbackListener<ExternalEvent> listener = new CallbackListener<>(event -> {
+			synchronized (received) {
+				received.add(((Touche) event).getToucheArgs().getPhysicalId());
+			}
+		}, executor);
+
+		for (int i = 0; i < 1000; i++)
+			listener.receiveEvent(new Touche(new ToucheArgs(i, 0, Color.RED)));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (listener.getPendingEvents() > 0 && System.nanoTime() < deadline)
+			Thread.sleep(1);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		synchronized (received) {
+			assertEquals(1000, received.size());
+			for (int i = 0; i < 1000; i++)
+				assertEquals(i, received.get(i).intValue());
+		}
+		assertEquals(0, listener.getPendingEvents());
+		assertFalse(listener.isStopped());
+	}
+
+	@Test
+	public void stopsWhenExecutorRejects() {
+		List<ExternalEvent> received = new ArrayList<>();
+		CallbackListener<ExternalEvent> listener = new CallbackListener<>(received::add, task -> {
+			throw new RejectedExecutionException();
+		});
+
+		listener.receiveEvent(new Touche(new ToucheArgs(1, 0, Color.RED)));
+		assertTrue(listener.isStopped());
+		listener.receiveEvent(new Touche(new ToucheArgs(2, 0, Color.RED)));
+		assertTrue(received.isEmpty());
+	}
+
+}
@@ -0,0 +1,59 @@
+package terminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import terminal.QSYPacket.CommandArgs;
+
+public final class CommandTemplateTest {
+
+	@Test
+	public void encodesSameFrameAsCommandPacket() {
+		CommandTemplate template = CommandTemplate.get(Color.GREEN, 1500);
+		ByteBuffer buffer = ByteBuffer.allocate(2 * QSYPacket.PACKET_SIZE);
+		QSYFrame frame = new QSYFrame().wrap(buffer, QSYPacket.PACKET_SIZE);
+		template.encode(frame, 42, 7);
+
+		byte[] encoded = new byte[QSYPacket.PACKET_SIZE];
+		buffer.position(QSYPacket.PACKET_SIZE);
+		buffer.get(encoded);
+		byte[] expected = QSYPacket.createCommandPacket(new CommandArgs(42, Color.GREEN, 1500, 7)).getRawData();
+		assertArrayEquals(expected, encoded);
+	}
+
+	@Test
+	public void reusesTemplatesForTheSameCommand() {
+		CommandTemplate template = CommandTemplate.get(Color.BLUE, 250);
+		assertSame(template, CommandTemplate.get(Color.BLUE, 250));
+		assertSame(Color.BLUE, template.getColor());
+		assertEquals(250, template.getDelay());
+	}
+
+	@Test
+	public void overwritesPreviousFrame() {
+		ByteBuffer buffer = ByteBuffer.allocate(QSYPacket.PACKET_SIZE);
+		QSYFrame frame = new QSYFrame().wrap(buffer, 0);
+		CommandTemplate.get(Color.WHITE, QSYPacket.MAX_DELAY_SIZE).encode(frame, 1, 1);
+		CommandTemplate.get(Color.NO_COLOR, 0).encode(frame, 2, 0);
+		assertEquals(2, frame.getPhysicalId());
+		assertEquals(0, frame.getDelay());
+		assertEquals(0, frame.getNumberOfStep());
+		assertSame(Color.NO_COLOR, frame.getColor());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeDelays() {
+		CommandTemplate.get(Color.RED, -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingColor() {
+		CommandTemplate.get(null, 0);
+	}
+
+}
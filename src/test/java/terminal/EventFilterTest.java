@@ -0,0 +1,75 @@
+package terminal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import terminal.Event.ExternalEvent;
+import terminal.Event.ExternalEvent.ConnectedNode;
+import terminal.Event.ExternalEvent.ExecutionStarted;
+import terminal.Event.ExternalEvent.Touche;
+import terminal.QSYPacket.ToucheArgs;
+
+public final class EventFilterTest {
+
+	@Test
+	public void acceptsEverythingByDefault() {
+		EventFilter filter = new EventFilter();
+		assertTrue(filter.accepts(new ConnectedNode(3, null)));
+		assertTrue(filter.accepts(new ExecutionStarted()));
+		assertTrue(filter.accepts(EventFilter.TOUCHE, QSYPacket.MAX_ID_SIZE - 1));
+	}
+
+	@Test
+	public void filtersByType() {
+		EventFilter filter = new EventFilter();
+		filter.addType(Touche.class);
+		filter.addType(ExecutionStarted.class);
+		assertTrue(filter.accepts(new Touche(new ToucheArgs(1, 0, Color.RED))));
+		assertTrue(filter.accepts(new ExecutionStarted()));
+		assertFalse(filter.accepts(new ConnectedNode(1, null)));
+		assertFalse(filter.accepts(EventFilter.OTHER, Event.NO_SOURCE));
+	}
+
+	@Test
+	public void filtersByNodeOnlyEventsWithSource() {
+		EventFilter filter = new EventFilter();
+		filter.addNode(0);
+		filter.addNode(64);
+		filter.addNode(QSYPacket.MAX_ID_SIZE - 1);
+		assertTrue(filter.accepts(new ConnectedNode(0, null)));
+		assertTrue(filter.accepts(new ConnectedNode(64, null)));
+		assertTrue(filter.accepts(new ConnectedNode(QSYPacket.MAX_ID_SIZE - 1, null)));
+		assertFalse(filter.accepts(new ConnectedNode(1, null)));
+		assertFalse(filter.accepts(new ConnectedNode(128, null)));
+		assertTrue(filter.accepts(new ExecutionStarted()));
+	}
+
+	@Test
+	public void copiesAreIndependent() {
+		EventFilter filter = new EventFilter();
+		filter.addNode(5);
+		EventFilter copy = new EventFilter(filter);
+		filter.addNode(6);
+		filter.addType(Touche.class);
+		assertFalse(copy.accepts(new ConnectedNode(6, null)));
+		assertTrue(copy.accepts(new ConnectedNode(5, null)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeIds() {
+		new EventFilter().addNode(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsBroadcastId() {
+		new EventFilter().addNode(QSYPacket.BROADCAST_ID);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownTypes() {
+		new EventFilter().addType(ExternalEvent.class);
+	}
+
+}
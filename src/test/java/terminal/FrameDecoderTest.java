@@ -0,0 +1,91 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import terminal.QSYPacket.PacketType;
+
+public final class FrameDecoderTest {
+
+	@Test
+	public void decodesConsecutiveFrames() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		putFrame(buffer, PacketType.Keepalive, 1);
+		putFrame(buffer, PacketType.Touche, 2);
+		buffer.flip();
+
+		FrameDecoder decoder = new FrameDecoder();
+		assertEquals(1, decoder.next(buffer).getPhysicalId());
+		QSYFrame frame = decoder.next(buffer);
+		assertEquals(PacketType.Touche, frame.getType());
+		assertEquals(2, frame.getPhysicalId());
+		assertNull(decoder.next(buffer));
+		assertEquals(0, buffer.remaining());
+		assertEquals(0, decoder.getResyncs());
+	}
+
+	@Test
+	public void keepsIncompleteFramesForNextRead() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		putFrame(buffer, PacketType.Keepalive, 7);
+		buffer.flip();
+		buffer.limit(10);
+
+		FrameDecoder decoder = new FrameDecoder();
+		assertNull(decoder.next(buffer));
+		assertEquals(0, buffer.position());
+		buffer.limit(QSYPacket.PACKET_SIZE);
+		assertEquals(7, decoder.next(buffer).getPhysicalId());
+	}
+
+	@Test
+	public void resynchronizesAfterCorruptBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(128);
+		putFrame(buffer, PacketType.Keepalive, 1);
+		buffer.put(new byte[] { 'Q', 'S', 0, 5, 'Q' });
+		putFrame(buffer, PacketType.Keepalive, 2);
+		buffer.put(new byte[] { 'Q', 'S', 'Y', 9 });
+		buffer.put(new byte[QSYPacket.PACKET_SIZE - 4]);
+		putFrame(buffer, PacketType.Touche, 3);
+		buffer.flip();
+
+		FrameDecoder decoder = new FrameDecoder();
+		assertEquals(1, decoder.next(buffer).getPhysicalId());
+		assertEquals(2, decoder.next(buffer).getPhysicalId());
+		assertEquals(3, decoder.next(buffer).getPhysicalId());
+		assertNull(decoder.next(buffer));
+		assertEquals(2, decoder.getResyncs());
+		assertEquals(5 + QSYPacket.PACKET_SIZE, decoder.getSkippedBytes());
+	}
+
+	@Test
+	public void countsOneResyncAcrossReads() {
+		ByteBuffer buffer = ByteBuffer.allocate(128);
+		buffer.put(new byte[40]);
+		buffer.flip();
+
+		FrameDecoder decoder = new FrameDecoder();
+		assertNull(decoder.next(buffer));
+		buffer.compact();
+		buffer.put(new byte[20]);
+		putFrame(buffer, PacketType.Keepalive, 4);
+		buffer.flip();
+
+		QSYFrame frame = decoder.next(buffer);
+		assertNotNull(frame);
+		assertEquals(4, frame.getPhysicalId());
+		assertEquals(1, decoder.getResyncs());
+		assertEquals(60, decoder.getSkippedBytes());
+	}
+
+	private static void putFrame(ByteBuffer buffer, PacketType type, int physicalId) {
+		new QSYFrame().wrap(buffer, buffer.position()).putHeader(type).putPhysicalId(physicalId);
+		buffer.position(buffer.position() + QSYPacket.PACKET_SIZE);
+	}
+
+}
@@ -0,0 +1,104 @@
+package terminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import terminal.Event.InternalEvent;
+import terminal.Event.InternalEvent.KeepAliveError;
+
+public final class KeepAliveTest {
+
+	private KeepAlive keepAlive;
+	private EventListener<InternalEvent> listener;
+
+	@Before
+	public void setUp() {
+		keepAlive = new KeepAlive(1, 0);
+		listener = new EventListener<>();
+		keepAlive.addListener(listener);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		keepAlive.close();
+	}
+
+	@Test
+	public void expiresSilentNodesInOneEvent() throws InterruptedException {
+		keepAlive.newNode(5);
+		keepAlive.newNode(7);
+		KeepAliveError error = nextError(3000);
+		assertNotNull(error);
+		assertEquals(2, error.getPhysicalIds().length);
+		assertNull(nextError(1000));
+	}
+
+	@Test
+	public void keepsNodesAliveWhileKeepalivesArrive() throws InterruptedException {
+		keepAlive.newNode(5);
+		for (int i = 0; i < 12; i++) {
+			Thread.sleep(QSYPacket.KEEP_ALIVE_MS / 4);
+			keepAlive.keepAlive(5);
+		}
+		assertNull(listener.pollEvent(0, TimeUnit.MILLISECONDS));
+
+		LinkQuality linkQuality = keepAlive.getLinkQuality(5);
+		assertEquals(12, linkQuality.getSamples());
+		assertFalse(linkQuality.isSuspected());
+		assertNull(keepAlive.getLinkQuality(6));
+
+		KeepAliveError error = nextError(3000);
+		assertNotNull(error);
+		assertArrayEquals(new int[] { 5 }, error.getPhysicalIds());
+	}
+
+	@Test
+	public void ignoresRemovedNodes() throws InterruptedException {
+		keepAlive.newNode(5);
+		keepAlive.removeNode(5);
+		assertNull(keepAlive.getLinkQuality(5));
+		assertNull(nextError(1500));
+	}
+
+	@Test
+	public void rearmsExpiredNodesThatComeBack() throws InterruptedException {
+		keepAlive.newNode(5);
+		assertNotNull(nextError(3000));
+		assertTrue(keepAlive.getLinkQuality(5).isSuspected());
+
+		for (int i = 0; i < 8; i++) {
+			keepAlive.keepAlive(5);
+			Thread.sleep(QSYPacket.KEEP_ALIVE_MS / 4);
+		}
+		assertNull(listener.pollEvent(0, TimeUnit.MILLISECONDS));
+		assertFalse(keepAlive.getLinkQuality(5).isSuspected());
+
+		KeepAliveError error = nextError(3000);
+		assertNotNull(error);
+		assertArrayEquals(new int[] { 5 }, error.getPhysicalIds());
+	}
+
+	@Test
+	public void rearmsNodesAddedAgainAfterExpiring() throws InterruptedException {
+		keepAlive.newNode(5);
+		assertNotNull(nextError(3000));
+		keepAlive.removeNode(5);
+		keepAlive.newNode(5);
+		assertNotNull(nextError(3000));
+	}
+
+	private KeepAliveError nextError(long timeout) throws InterruptedException {
+		return (KeepAliveError) listener.pollEvent(timeout, TimeUnit.MILLISECONDS);
+	}
+
+}
@@ -0,0 +1,99 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import terminal.TerminalConfiguration.WaitStrategy;
+
+public final class MpscRingBufferTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int EVENTS = 100000;
+
+	@Test
+	public void keepsOrderOfEachProducer() throws Exception {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			MpscRingBuffer<Long> queue = new MpscRingBuffer<>(16, waitStrategy);
+			Thread[] producers = new Thread[PRODUCERS];
+			for (int i = 0; i < PRODUCERS; i++) {
+				long producer = i;
+				producers[i] = new Thread(() -> {
+					for (int j = 0; j < EVENTS; j++)
+						queue.add((producer << 32) | j);
+				});
+				producers[i].start();
+			}
+
+			int[] expected = new int[PRODUCERS];
+			for (int i = 0; i < PRODUCERS * EVENTS; i++) {
+				long event = queue.take();
+				int producer = (int) (event >>> 32);
+				assertEquals(waitStrategy.toString(), expected[producer]++, (int) event);
+			}
+			for (Thread producer : producers)
+				producer.join();
+			assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void servesConsumerOverflowAfterPublishedEvents() throws Exception {
+		MpscRingBuffer<Integer> queue = new MpscRingBuffer<>(2, WaitStrategy.Blocking);
+		ArrayList<Integer> events = new ArrayList<>();
+		queue.drainTo(events, 0);
+
+		queue.add(1);
+		queue.add(2);
+		queue.add(3);
+		assertEquals(1, (int) queue.take());
+		queue.add(4);
+		queue.drainTo(events, 8);
+		assertEquals(3, events.size());
+		assertEquals(2, (int) events.get(0));
+		assertEquals(3, (int) events.get(1));
+		assertEquals(4, (int) events.get(2));
+	}
+
+	@Test
+	public void dropsEventsOfStalledProducersOnceClosed() throws Exception {
+		MpscRingBuffer<Integer> queue = new MpscRingBuffer<>(2, WaitStrategy.Blocking);
+		queue.add(1);
+		queue.add(2);
+		Thread producer = new Thread(() -> queue.add(3));
+		producer.start();
+		Thread.sleep(50);
+		assertTrue(producer.isAlive());
+
+		queue.close();
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		assertEquals(1, queue.getStatistics().getDroppedEvents());
+		assertTrue(queue.hasFallenBehind());
+	}
+
+	@Test
+	public void dropsEventsOfInterruptedProducers() throws Exception {
+		MpscRingBuffer<Integer> queue = new MpscRingBuffer<>(2, WaitStrategy.SpinThenPark);
+		queue.add(1);
+		queue.add(2);
+		Thread producer = new Thread(() -> queue.add(3));
+		producer.start();
+		Thread.sleep(50);
+
+		producer.interrupt();
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		assertEquals(1, queue.getStatistics().getDroppedEvents());
+		assertEquals(1, (int) queue.take());
+		assertEquals(2, (int) queue.take());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+}
@@ -0,0 +1,138 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class NodeRegistryTest {
+
+	private static final int RECORD_SIZE = 12;
+
+	private Path path;
+	private InetAddress address;
+
+	@Before
+	public void setUp() throws IOException {
+		path = Files.createTempFile("nodes", ".registry");
+		Files.delete(path);
+		address = InetAddress.getByName("10.0.0.7");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(path);
+		Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".tmp"));
+	}
+
+	@Test
+	public void restoresAddedNodes() throws IOException {
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			registry.add(1, address, 0);
+			registry.add(2, address, QSYFrame.FLAG_MULTICAST_COMMANDS);
+			registry.add(3, address, 0);
+			registry.remove(1);
+		}
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			List<QSYPacket> nodes = registry.getKnownNodes();
+			assertEquals(2, nodes.size());
+			assertEquals(2, nodes.get(0).getPhysicalId());
+			assertEquals(address, nodes.get(0).getNodeAddress());
+			assertTrue(nodes.get(0).supportsMulticastCommands());
+			assertEquals(3, nodes.get(1).getPhysicalId());
+		}
+	}
+
+	@Test
+	public void truncatesTornTailBeforeAppending() throws IOException {
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			registry.add(1, address, 0);
+		}
+		Files.write(path, new byte[] { 0, 2, 10, 0 }, StandardOpenOption.APPEND);
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			assertEquals(1, registry.getKnownNodes().size());
+			registry.add(2, address, 0);
+		}
+		assertEquals(0, Files.size(path) % RECORD_SIZE);
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			assertEquals(2, registry.getKnownNodes().size());
+		}
+	}
+
+	@Test
+	public void skipsCorruptRecords() throws IOException {
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			registry.add(1, address, 0);
+			registry.add(2, address, 0);
+		}
+		byte[] data = Files.readAllBytes(path);
+		data[2] ^= 0x55;
+		Files.write(path, data);
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			List<QSYPacket> nodes = registry.getKnownNodes();
+			assertEquals(1, nodes.size());
+			assertEquals(2, nodes.get(0).getPhysicalId());
+		}
+	}
+
+	@Test
+	public void keepsNodesUntilTooManyFailedConnects() throws IOException {
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			registry.add(1, address, 0);
+			registry.add(2, address, 0);
+		}
+
+		for (int i = 0; i < 4; i++) {
+			try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+				assertEquals(2, registry.getKnownNodes().size());
+				registry.connectionFailed(1);
+				registry.connectionFailed(2);
+				if (i == 2)
+					registry.add(2, address, 0);
+			}
+		}
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			assertEquals(2, registry.getKnownNodes().size());
+			registry.connectionFailed(1);
+			registry.connectionFailed(2);
+		}
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			List<QSYPacket> nodes = registry.getKnownNodes();
+			assertEquals(1, nodes.size());
+			assertEquals(2, nodes.get(0).getPhysicalId());
+		}
+	}
+
+	@Test
+	public void compactsObsoleteRecords() throws IOException {
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			for (int i = 0; i < 32; i++) {
+				registry.add(1, address, 0);
+				registry.remove(1);
+			}
+			registry.add(2, address, 0);
+			registry.connectionFailed(2);
+		}
+
+		try (NodeRegistry registry = new NodeRegistry(path.toString())) {
+			assertEquals(1, registry.getKnownNodes().size());
+		}
+		assertEquals(2 * RECORD_SIZE, Files.size(path));
+	}
+
+}
@@ -0,0 +1,86 @@
+package terminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import terminal.QSYPacket.CommandArgs;
+import terminal.QSYPacket.PacketType;
+
+public final class QSYFrameTest {
+
+	@Test
+	public void writesAndReadsFieldsInPlace() {
+		ByteBuffer buffer = ByteBuffer.allocate(3 * QSYPacket.PACKET_SIZE);
+		QSYFrame frame = new QSYFrame().wrap(buffer, QSYPacket.PACKET_SIZE);
+		frame.putHeader(PacketType.Touche).putPhysicalId(QSYPacket.MAX_ID_SIZE).putColor(Color.CYAN).putDelay(QSYPacket.MAX_DELAY_SIZE).putNumberOfStep(65535).putFlags(0xFF);
+
+		assertTrue(frame.hasValidSignature());
+		assertTrue(frame.hasValidType());
+		assertEquals(PacketType.Touche, frame.getType());
+		assertEquals(QSYPacket.MAX_ID_SIZE, frame.getPhysicalId());
+		assertSame(Color.CYAN, frame.getColor());
+		assertEquals(QSYPacket.MAX_DELAY_SIZE, frame.getDelay());
+		assertEquals(65535, frame.getNumberOfStep());
+		assertEquals(0xFF, frame.getFlags());
+		assertEquals(0, buffer.position());
+		assertEquals(0, buffer.get(0));
+		assertEquals(0, buffer.get(2 * QSYPacket.PACKET_SIZE));
+	}
+
+	@Test
+	public void clearsPreviousFrameOnHeader() {
+		ByteBuffer buffer = ByteBuffer.allocate(QSYPacket.PACKET_SIZE);
+		QSYFrame frame = new QSYFrame().wrap(buffer, 0);
+		frame.putHeader(PacketType.Command).putPhysicalId(12).putColor(Color.RED).putDelay(1000).putNumberOfStep(3);
+		frame.putHeader(PacketType.Keepalive);
+		assertEquals(0, frame.getPhysicalId());
+		assertEquals(0, frame.getDelay());
+		assertEquals(0, frame.getNumberOfStep());
+		assertSame(Color.NO_COLOR, frame.getColor());
+	}
+
+	@Test
+	public void detectsInvalidFrames() {
+		ByteBuffer buffer = ByteBuffer.allocate(QSYPacket.PACKET_SIZE);
+		QSYFrame frame = new QSYFrame().wrap(buffer, 0);
+		assertFalse(frame.hasValidSignature());
+		frame.putHeader(PacketType.Hello);
+		buffer.put(QSYFrame.TYPE_INDEX, (byte) 7);
+		assertTrue(frame.hasValidSignature());
+		assertFalse(frame.hasValidType());
+	}
+
+	@Test
+	public void packetsRoundTripThroughRawData() throws Exception {
+		QSYPacket packet = QSYPacket.createCommandPacket(new CommandArgs(513, Color.MAGENTA, 70000, 9));
+		byte[] data = packet.getRawData();
+		assertEquals(QSYPacket.PACKET_SIZE, data.length);
+
+		QSYPacket decoded = new QSYPacket(InetAddress.getLoopbackAddress(), data);
+		assertEquals(PacketType.Command, decoded.getType());
+		assertEquals(513, decoded.getPhysicalId());
+		assertSame(Color.MAGENTA, decoded.getColor());
+		assertEquals(70000, decoded.getDelay());
+		assertEquals(9, decoded.getNumberOfStep());
+		assertArrayEquals(data, decoded.getRawData());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidSignature() throws Exception {
+		new QSYPacket(InetAddress.getLoopbackAddress(), new byte[QSYPacket.PACKET_SIZE]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidLength() throws Exception {
+		new QSYPacket(InetAddress.getLoopbackAddress(), new byte[QSYPacket.PACKET_SIZE - 1]);
+	}
+
+}
@@ -0,0 +1,88 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public final class TimingWheelTest {
+
+	private static final long TICK = 10;
+	private static final int WHEEL_SIZE = 8;
+
+	@Test
+	public void expiresElementsOnTheirTick() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+		wheel.schedule("b", 35);
+		wheel.schedule("a", 12);
+		wheel.schedule("c", 39);
+
+		ArrayList<String> expired = new ArrayList<>();
+		assertEquals(0, wheel.advance(5, expired));
+		assertEquals(1, wheel.advance(19, expired));
+		assertEquals("a", expired.get(0));
+		expired.clear();
+		assertEquals(0, wheel.advance(29, expired));
+		assertEquals(2, wheel.advance(30, expired));
+		assertTrue(expired.contains("b") && expired.contains("c"));
+	}
+
+	@Test
+	public void keepsElementsOfLaterRounds() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+		wheel.schedule("later", (2 * WHEEL_SIZE + 3) * TICK);
+
+		ArrayList<String> expired = new ArrayList<>();
+		for (long now = 0; now < (2 * WHEEL_SIZE + 3) * TICK; now += TICK)
+			assertEquals(0, wheel.advance(now, expired));
+		assertEquals(1, wheel.advance((2 * WHEEL_SIZE + 3) * TICK, expired));
+		assertEquals("later", expired.get(0));
+	}
+
+	@Test
+	public void expiresPastDeadlinesOnNextTick() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 100);
+		wheel.schedule("late", 20);
+		ArrayList<String> expired = new ArrayList<>();
+		assertEquals(0, wheel.advance(100, expired));
+		assertEquals(1, wheel.advance(110, expired));
+	}
+
+	@Test
+	public void catchesUpAfterLongPauses() {
+		TimingWheel<Integer> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+		for (int i = 1; i <= 5 * WHEEL_SIZE; i++)
+			wheel.schedule(i, i * TICK);
+		ArrayList<Integer> expired = new ArrayList<>();
+		assertEquals(5 * WHEEL_SIZE, wheel.advance(10 * WHEEL_SIZE * TICK, expired));
+	}
+
+	@Test
+	public void reportsNextOccupiedTick() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+		assertEquals(Long.MAX_VALUE, wheel.nextTick());
+
+		wheel.schedule("far", (WHEEL_SIZE + 2) * TICK);
+		assertTrue(wheel.hasPendingEntries());
+		assertEquals(WHEEL_SIZE + 2, wheel.nextTick());
+		assertFalse(wheel.hasPendingEntries());
+
+		wheel.schedule("near", 5 * TICK);
+		assertEquals(5, wheel.nextTick());
+
+		ArrayList<String> expired = new ArrayList<>();
+		wheel.advance(5 * TICK, expired);
+		assertEquals(WHEEL_SIZE + 2, wheel.nextTick());
+		wheel.advance((WHEEL_SIZE + 2) * TICK, expired);
+		assertEquals(Long.MAX_VALUE, wheel.nextTick());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSizesThatAreNotPowersOfTwo() {
+		new TimingWheel<String>(TICK, 6, 0);
+	}
+
+}
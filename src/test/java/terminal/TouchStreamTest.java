@@ -0,0 +1,98 @@
+package terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public final class TouchStreamTest {
+
+	private static final int PRODUCERS = 3;
+	private static final int TOUCHES = 100000;
+
+	@Test
+	public void roundsCapacityToPowerOfTwo() {
+		assertEquals(8, new TouchStream(5).getCapacity());
+		assertEquals(2, new TouchStream(1).getCapacity());
+		assertEquals(64, new TouchStream(64).getCapacity());
+	}
+
+	@Test
+	public void deliversFieldsInOrder() {
+		TouchStream touchStream = new TouchStream(4);
+		assertTrue(touchStream.publish(1, 2, 3, 4000000000L, 5));
+		assertTrue(touchStream.publish(QSYPacket.MAX_ID_SIZE, 65535, 7, 0, Long.MAX_VALUE));
+		assertEquals(2, touchStream.getPendingTouches());
+
+		ArrayList<long[]> touches = new ArrayList<>();
+		assertEquals(1, touchStream.poll((physicalId, numberOfStep, colorIndex, delay, timestamp) -> touches.add(new long[] { physicalId, numberOfStep, colorIndex, delay, timestamp }), 1));
+		assertEquals(1, touchStream.poll((physicalId, numberOfStep, colorIndex, delay, timestamp) -> touches.add(new long[] { physicalId, numberOfStep, colorIndex, delay, timestamp }), 8));
+		assertEquals(0, touchStream.getPendingTouches());
+
+		long[] first = touches.get(0);
+		assertEquals(1, first[0]);
+		assertEquals(2, first[1]);
+		assertEquals(3, first[2]);
+		assertEquals(4000000000L, first[3]);
+		assertEquals(5, first[4]);
+		long[] second = touches.get(1);
+		assertEquals(QSYPacket.MAX_ID_SIZE, second[0]);
+		assertEquals(65535, second[1]);
+		assertEquals(7, second[2]);
+		assertEquals(Long.MAX_VALUE, second[4]);
+	}
+
+	@Test
+	public void dropsTouchesWhenFull() {
+		TouchStream touchStream = new TouchStream(2);
+		assertTrue(touchStream.publish(1, 0, 0, 0, 0));
+		assertTrue(touchStream.publish(2, 0, 0, 0, 0));
+		assertFalse(touchStream.publish(3, 0, 0, 0, 0));
+		assertEquals(1, touchStream.getDroppedTouches());
+
+		int[] last = new int[1];
+		assertEquals(2, touchStream.poll((physicalId, numberOfStep, colorIndex, delay, timestamp) -> last[0] = physicalId, 8));
+		assertEquals(2, last[0]);
+		assertTrue(touchStream.publish(4, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void keepsTouchesOfConcurrentProducers() throws InterruptedException {
+		TouchStream touchStream = new TouchStream(1024);
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			int producer = i;
+			producers[i] = new Thread(() -> {
+				for (int j = 0; j < TOUCHES; j++)
+					touchStream.publish(producer, j & 0xFFFF, j & 7, j, ((long) producer << 32) | j);
+			});
+			producers[i].start();
+		}
+
+		long[] last = { -1, -1, -1 };
+		long[] received = new long[1];
+		TouchStream.TouchHandler handler = (physicalId, numberOfStep, colorIndex, delay, timestamp) -> {
+			int j = (int) timestamp;
+			assertEquals(physicalId, (int) (timestamp >>> 32));
+			assertEquals(j & 0xFFFF, numberOfStep);
+			assertEquals(j & 7, colorIndex);
+			assertEquals(j, delay);
+			assertTrue(j > last[physicalId]);
+			last[physicalId] = j;
+			++received[0];
+		};
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (Thread producer : producers)
+				running |= producer.isAlive();
+			touchStream.poll(handler, 256);
+		}
+		touchStream.poll(handler, Integer.MAX_VALUE);
+		assertEquals(PRODUCERS * TOUCHES, received[0] + touchStream.getDroppedTouches());
+	}
+
+}